@@ -0,0 +1,68 @@
+package bluff.bench;
+
+import bluff.BluffGame;
+import bluff.Cards;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Shuffling and dealing: what every round starts with.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DealBenchmark {
+
+    @Param({"2", "4", "8"})
+    public int seats;
+
+    private SplittableRandom rng;
+    private Cards deck;
+    private BluffGame game;
+
+    @Setup
+    public void setup() {
+        //one generator per table, as the server does it; each benchmark thread is a table
+        rng = new SplittableRandom(Cards.seed(42, Thread.currentThread().getId()));
+        deck = new Cards(rng);
+        game = BluffGame.withSeats(seats, rng);
+    }
+
+    //the deck on its own
+    @Benchmark
+    public void shuffleAndDeal(Blackhole bh) {
+        deck.shuffle(rng);
+        bh.consume(deck.dealCards(Cards.DECK_SIZE));
+    }
+
+    //a whole round start: shuffle, clear the hands, deal round the table
+    @Benchmark
+    public int startRound() {
+        return game.startRound();
+    }
+
+    //many tables dealing at once: nothing is shared, so given a core per thread this matches startRound
+    @Benchmark
+    @Threads(4)
+    public int startRoundManyTables() {
+        return game.startRound();
+    }
+}
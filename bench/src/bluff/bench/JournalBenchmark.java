@@ -0,0 +1,59 @@
+package bluff.bench;
+
+import bluff.BluffGame;
+import bluff.Journal;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * What journaling adds to a turn: appending a move, and a whole deal.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JournalBenchmark {
+
+    private Journal journal;
+    private BluffGame game;
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        journal = new Journal(Files.createTempDirectory("bluff-journal"));
+        game = BluffGame.withSeats(4, new SplittableRandom(42));
+        game.startRound();
+    }
+
+    @TearDown
+    public void tearDown() {
+        journal.close();
+    }
+
+    @Benchmark
+    public void move() {
+        journal.moved(next++, 1, 1);
+    }
+
+    @Benchmark
+    public void deal() {
+        journal.dealt(next++, game);
+    }
+}
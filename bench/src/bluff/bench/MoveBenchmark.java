@@ -0,0 +1,88 @@
+package bluff.bench;
+
+import bluff.BluffGame;
+import bluff.BluffOracle;
+import bluff.Cards;
+import bluff.Hand;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Taking a move out of a hand and deciding a bluff call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoveBenchmark {
+
+    private static final int MOVES = 1024;
+
+    private Hand hand;
+    private int[] actual = new int[MOVES];
+    private int[] fake = new int[MOVES];
+    private int[] played = new int[MOVES];
+    private int next;
+
+    @Setup
+    public void setup() {
+        //a five card hand with a bit of everything
+        hand = new Hand();
+        hand.add(Cards.ACE);
+        hand.add(Cards.ACE);
+        hand.add(Cards.KING);
+        hand.add(Cards.QUEEN);
+        hand.add(Cards.JACK);
+
+        SplittableRandom rng = new SplittableRandom(42);
+        for (int i = 0; i < MOVES; i++) {
+            actual[i] = rng.nextInt(3);
+            fake[i] = rng.nextInt(4 - actual[i]);
+            played[i] = Hand.pack(Cards.ACE, actual[i]) + Hand.pack(Cards.JACK, fake[i]);
+        }
+    }
+
+    //play a move, then put the cards back so the hand never runs out
+    @Benchmark
+    public int playAndRestore() {
+        int i = next++ & (MOVES - 1);
+        int cards = hand.play(Cards.ACE, actual[i], fake[i]);
+        hand.addAll(cards);
+        return cards;
+    }
+
+    @Benchmark
+    public boolean isLie() {
+        return Hand.isLie(played[next++ & (MOVES - 1)], Cards.ACE);
+    }
+
+    //how likely a claim is a lie, as a bot or a HINT asks it
+    @Benchmark
+    public double lieChance() {
+        int i = next++ & (MOVES - 1);
+        return BluffOracle.lieChance(2 + actual[i], 15, 5, 1 + fake[i]);
+    }
+
+    //the whole bluff path on a fresh table: deal, one move, someone calls it
+    @Benchmark
+    public int roundWithBluffCall() {
+        BluffGame game = BluffGame.withSeats(4, new SplittableRandom(next++));
+        game.startRound();
+        game.play(0, 1);
+        return game.callBluff((game.turn() + 1) % 4);
+    }
+}
@@ -0,0 +1,46 @@
+package bluff.bench;
+
+import bluff.ClientHandler;
+import bluff.Wire;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decoding an incoming move in each protocol.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ParseBenchmark {
+
+    private String line = "MOVE 2 1";
+    private byte[] frame = Wire.move(2, 1);
+
+    @Benchmark
+    public int textMove() {
+        return ClientHandler.parseMove(line);
+    }
+
+    //what NioConnection and ClientHandler do with a MOVE frame
+    @Benchmark
+    public int binaryMove() {
+        int len = ((frame[0] & 0xFF) << 8) | (frame[1] & 0xFF);
+        if (frame[2] != Wire.MOVE || len != 3) {
+            return -1;
+        }
+        return frame[3] < 0 || frame[4] < 0 ? -1 : frame[3] << 8 | frame[4];
+    }
+}
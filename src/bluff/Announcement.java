@@ -0,0 +1,244 @@
+package bluff;
+
+import java.nio.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One public event, for everyone at a table and everyone watching it.
+ * It is encoded once, in each form a client might speak, into one
+ * read-only buffer. Every connection it goes to queues a view of those
+ * same bytes and writes it out with the rest of its outbox in one
+ * gathering write, so a thousand recipients cost no copies at all. Views
+ * come back once they are written and are handed out again, so sending a
+ * kept announcement makes nothing new either.
+ *
+ * The messages a game sends over and over (the rules reminder, round
+ * starts, turns, moves, bluff results, the move prompt, a hand) are
+ * encoded the first time they come up and kept, off the heap, so the
+ * steady state of a game encodes nothing. Player IDs and card counts are
+ * small, so every variant fits in a table indexed by them.
+ */
+public final class Announcement {
+    //player IDs and card counts go up to the deck size, one table per variant
+    private static final int IDS = Cards.DECK_SIZE + 1;
+    private static final int COUNTS = Cards.DECK_SIZE + 1;
+    private static final int MOST_OF_A_KIND = Math.max(Math.max(Cards.NUM_ACES, Cards.NUM_KINGS),
+        Math.max(Cards.NUM_QUEENS, Cards.NUM_JACKS));
+    private static final Announcement[] ROUNDS = new Announcement[Cards.NUM_TYPES];
+    private static final Announcement[] YOUR_TURNS = new Announcement[Cards.NUM_TYPES];
+    private static final Announcement[] PROMPTS = new Announcement[Cards.NUM_TYPES];
+    private static final Announcement[] TURNS = new Announcement[IDS];
+    //filled in as they come up; a race only builds one twice, and with every field final any thread sees it whole
+    private static final Announcement[] MOVES = new Announcement[IDS * COUNTS * Cards.NUM_TYPES * COUNTS];
+    private static final Announcement[] BLUFFS = new Announcement[IDS * IDS * 2];
+    private static final Announcement[] HANDS = new Announcement[pow(MOST_OF_A_KIND + 1, Cards.NUM_TYPES)];
+    //-Dbluff.sharedViews: written views each kept announcement holds on to; recipients past that get new ones
+    private static final int MAX_FREE_VIEWS = Math.max(0, Integer.getInteger("bluff.sharedViews", 64));
+
+    //the forms a connection can ask for, see view()
+    public static final int LINES = 0;
+    public static final int FRAME = 1;
+    //the frame with its WebSocket header in front, as one message
+    public static final int WEB_SOCKET = 2;
+
+    static {
+        for (int card = 0; card < Cards.NUM_TYPES; card++) {
+            ROUNDS[card] = new Announcement(Wire.frame(Wire.ROUND, (byte) card), Wire.roundText(card), true);
+            YOUR_TURNS[card] = new Announcement(Wire.frame(Wire.YOUR_TURN, (byte) card), Wire.yourTurnText(card), true);
+            PROMPTS[card] = new Announcement(Wire.text(Wire.promptText(card)), Wire.promptText(card), true);
+        }
+        for (int id = 0; id < IDS; id++) {
+            TURNS[id] = new Announcement(Wire.frame(Wire.TURN, (byte) id), Wire.turnText(id), true);
+        }
+    }
+
+    //one buffer: [WebSocket header][frame][text lines]
+    private final ByteBuffer shared;
+    private final int frameStart;
+    private final int linesStart;
+    private final boolean kept;
+    //views that have been written out, ready to go to the next recipient (guarded by this)
+    private final ByteBuffer[] free;
+    private int freeCount = 0;
+
+    private Announcement(byte[] frame, String text, boolean kept) {
+        byte[] header = Http.wsHeader(Http.WS_BINARY, frame.length);
+        byte[] lines = (text + "\n").getBytes(StandardCharsets.UTF_8);
+        int size = header.length + frame.length + lines.length;
+        //kept ones go off the heap, so a write goes straight to the socket
+        ByteBuffer all = kept ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+        all.put(header).put(frame).put(lines);
+        this.shared = all.asReadOnlyBuffer();
+        this.frameStart = header.length;
+        this.linesStart = header.length + frame.length;
+        this.kept = kept;
+        //a one-off goes to a table or two and is gone, not worth keeping views for
+        this.free = new ByteBuffer[kept ? MAX_FREE_VIEWS : 0];
+    }
+
+    /**
+     * @param frame What binary clients get, see {@link Wire}
+     * @param lines What text clients get instead
+     */
+    public static Announcement of(byte[] frame, String... lines) {
+        return new Announcement(frame, String.join("\n", lines), false);
+    }
+
+    /**
+     * A plain message, which binary clients get as a TEXT frame.
+     */
+    public static Announcement text(String line) {
+        return new Announcement(Wire.text(line), line, false);
+    }
+
+    /**
+     * A plain message that never changes, encoded once for good. Keep it in
+     * a static field.
+     */
+    public static Announcement constant(String line) {
+        return new Announcement(Wire.text(line), line, true);
+    }
+
+    public static Announcement round(int roundCard) {
+        return ROUNDS[roundCard];
+    }
+
+    public static Announcement turn(int playerID) {
+        return playerID >= 0 && playerID < IDS ? TURNS[playerID]
+            : of(Wire.frame(Wire.TURN, (byte) playerID), Wire.turnText(playerID));
+    }
+
+    /**
+     * The nudge a player gets when it is their turn. Text clients are sent
+     * their hand and {@link #prompt} after it.
+     */
+    public static Announcement yourTurn(int roundCard) {
+        return YOUR_TURNS[roundCard];
+    }
+
+    public static Announcement prompt(int roundCard) {
+        return PROMPTS[roundCard];
+    }
+
+    public static Announcement move(int playerID, int count, int roundCard, int cardsLeft) {
+        if (playerID < 0 || playerID >= IDS || count < 0 || count >= COUNTS || cardsLeft < 0 || cardsLeft >= COUNTS) {
+            return encodeMove(playerID, count, roundCard, cardsLeft, false);
+        }
+        int i = ((playerID * COUNTS + count) * Cards.NUM_TYPES + roundCard) * COUNTS + cardsLeft;
+        Announcement move = MOVES[i];
+        return move != null ? move : (MOVES[i] = encodeMove(playerID, count, roundCard, cardsLeft, true));
+    }
+
+    public static Announcement bluff(int accuserID, int accusedID, boolean wasLying) {
+        if (accuserID < 0 || accuserID >= IDS || accusedID < 0 || accusedID >= IDS) {
+            return encodeBluff(accuserID, accusedID, wasLying, false);
+        }
+        int i = (accuserID * IDS + accusedID) * 2 + (wasLying ? 1 : 0);
+        Announcement bluff = BLUFFS[i];
+        return bluff != null ? bluff : (BLUFFS[i] = encodeBluff(accuserID, accusedID, wasLying, true));
+    }
+
+    /**
+     * A whole hand as text clients see it, e.g. after a deal.
+     *
+     * @param packed See {@link Hand#packed()}
+     */
+    public static Announcement hand(int packed) {
+        int i = 0;
+        for (int card = 0; card < Cards.NUM_TYPES; card++) {
+            int count = Hand.count(packed, card);
+            if (count > MOST_OF_A_KIND) {
+                return encodeHand(packed, false);
+            }
+            i = i * (MOST_OF_A_KIND + 1) + count;
+        }
+        Announcement hand = HANDS[i];
+        return hand != null ? hand : (HANDS[i] = encodeHand(packed, true));
+    }
+
+    private static Announcement encodeMove(int playerID, int count, int roundCard, int cardsLeft, boolean kept) {
+        byte[] frame = Wire.frame(Wire.MOVE, (byte) playerID, (byte) count, (byte) roundCard, (byte) cardsLeft);
+        return new Announcement(frame, Wire.playedText(playerID, count, roundCard) + "\n"
+            + Wire.cardsLeftText(playerID, cardsLeft), kept);
+    }
+
+    private static Announcement encodeBluff(int accuserID, int accusedID, boolean wasLying, boolean kept) {
+        byte[] frame = Wire.frame(Wire.BLUFF, (byte) accuserID, (byte) accusedID, (byte) (wasLying ? 1 : 0));
+        return new Announcement(frame, Wire.bluffText(accuserID, accusedID, wasLying), kept);
+    }
+
+    private static Announcement encodeHand(int packed, boolean kept) {
+        Hand hand = new Hand();
+        hand.addAll(packed);
+        String text = Wire.handText(hand);
+        return new Announcement(Wire.text(text), text, kept);
+    }
+
+    private static int pow(int base, int exponent) {
+        int result = 1;
+        for (int i = 0; i < exponent; i++) {
+            result *= base;
+        }
+        return result;
+    }
+
+    /**
+     * How many bytes {@link #view} would hold.
+     *
+     * @param form {@link #LINES}, {@link #FRAME} or {@link #WEB_SOCKET}
+     */
+    public int size(int form) {
+        return end(form) - start(form);
+    }
+
+    /**
+     * A read-only view of the shared bytes in one form, for one recipient
+     * to write out and move the position of as it likes. Give it back with
+     * {@link #release} once it is written.
+     *
+     * @param form {@link #LINES}, {@link #FRAME} or {@link #WEB_SOCKET}
+     */
+    public ByteBuffer view(int form) {
+        ByteBuffer view = null;
+        if (kept) {
+            synchronized (this) {
+                if (freeCount > 0) {
+                    view = free[--freeCount];
+                    free[freeCount] = null;
+                }
+            }
+        }
+        if (view == null) {
+            view = shared.duplicate();
+        }
+        view.clear();
+        view.position(start(form)).limit(end(form));
+        return view;
+    }
+
+    /**
+     * Takes back a view from {@link #view} that its recipient is done with.
+     */
+    public void release(ByteBuffer view) {
+        if (!kept) {
+            return;
+        }
+        synchronized (this) {
+            if (freeCount < free.length) {
+                free[freeCount++] = view;
+            }
+        }
+    }
+
+    private int start(int form) {
+        return switch (form) {
+            case LINES -> linesStart;
+            case FRAME -> frameStart;
+            default -> 0;
+        };
+    }
+
+    private int end(int form) {
+        return form == LINES ? shared.capacity() : linesStart;
+    }
+}
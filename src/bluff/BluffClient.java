@@ -0,0 +1,123 @@
+package bluff;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+
+public class BluffClient {
+    //how often to try getting back in after the connection drops mid-game
+    private static final int RECONNECT_TRIES = 30;
+    private static final long RECONNECT_PAUSE_MS = 1000;
+
+    private static volatile OutputStream out;
+    //from the server's SESSION frame, 0 until we have one
+    private static volatile long token = 0;
+    //the game is over for us, so a closed connection is expected
+    private static volatile boolean finished = false;
+    //our hand, kept up to date from the server's changes
+    private static final HandSync hand = new HandSync();
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--load")) {
+            //many headless players instead of one interactive one
+            LoadGenerator.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length != 2) {
+            System.out.println("Usage: java bluff.BluffClient <server_ip> <port>");
+            System.out.println("       java bluff.BluffClient --load <server_ip> <port> <players> [seconds] [bluffRate]");
+            return;
+        }
+        String serverIp = args[0];
+        int port       = Integer.parseInt(args[1]);
+        BufferedReader console = new BufferedReader(new InputStreamReader(System.in));
+
+        connect(serverIp, port);
+
+        // main loop to send user commands
+        String cmd;
+        while ((cmd = console.readLine()) != null) {
+            try {
+                out.write(Wire.command(cmd));
+                out.flush();
+            } catch (IOException e) {
+                System.out.println("Not connected, trying to get back in...");
+            }
+        }
+    }
+
+    private static void connect(String serverIp, int port) throws IOException {
+        Socket sock = new Socket(serverIp, port);
+        OutputStream o = sock.getOutputStream();
+
+        // ask for the binary protocol, and our old seat if we had one
+        o.write(Wire.MAGIC);
+        if (token != 0) {
+            o.write(Wire.session(Wire.RESUME, token));
+        }
+        o.flush();
+        out = o;
+
+        // thread to print server messages, and to reconnect if the connection drops mid-game
+        new Thread(() -> {
+            try {
+                Wire.readAll(sock.getInputStream(), BluffClient::onFrame);
+            } catch (IOException e) { }
+            if (!finished && token != 0) {
+                reconnect(serverIp, port);
+            }
+        }).start();
+    }
+
+    private static void onFrame(byte op, byte[] payload) {
+        if (op == Wire.PING) {
+            //the server checking we're still here
+            send(Wire.pong());
+            return;
+        }
+        if (op == Wire.SESSION) {
+            //kept quietly, the client resumes with it by itself
+            token = Wire.tokenOf(payload);
+            return;
+        }
+        if (op == Wire.HAND || op == Wire.HAND_DELTA) {
+            if (!hand.apply(op, payload)) {
+                //missed a change, ask for the whole hand
+                send(Wire.resync());
+            } else if (!hand.isWaiting()) {
+                System.out.println(Wire.handText(hand.hand()));
+            }
+            return;
+        }
+        String text = Wire.describe(op, payload);
+        if (op == Wire.ELIMINATED || text.startsWith("Game Over")) {
+            finished = true;
+        }
+        System.out.println(text);
+    }
+
+    private static void send(byte[] frame) {
+        try {
+            out.write(frame);
+            out.flush();
+        } catch (IOException e) {
+            //the reader will notice the connection went
+        }
+    }
+
+    private static void reconnect(String serverIp, int port) {
+        System.out.println("Connection lost, reconnecting...");
+        for (int i = 0; i < RECONNECT_TRIES; i++) {
+            try {
+                Thread.sleep(RECONNECT_PAUSE_MS);
+                connect(serverIp, port);
+                return;
+            } catch (IOException e) {
+                //server still unreachable, try again
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+        System.out.println("Could not reconnect.");
+    }
+}
@@ -0,0 +1,220 @@
+package bluff;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.*;
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class BluffClientSwing extends JFrame {
+    // the log only keeps this many lines, older ones scroll away for good
+    private static final int LOG_LINES = Integer.getInteger("bluff.logLines", 500);
+    // how often queued server messages are drawn, at most
+    private static final int FPS = Integer.getInteger("bluff.clientFps", 30);
+    // frames waiting for the next draw; when full the reader waits, and so does the server
+    private static final int MAX_PENDING = 8192;
+
+    private Socket socket;
+    private OutputStream out;
+
+    private final JTextArea logArea = new JTextArea();
+    private final DefaultListModel<String> handModel = new DefaultListModel<>();
+    private final JList<String> handList = new JList<>(handModel);
+    private final HandSync hand = new HandSync();
+    // how many of each card the list shows right now
+    private final int[] shown = new int[Cards.NUM_TYPES];
+    private final BlockingQueue<Inbound> pending = new ArrayBlockingQueue<>(MAX_PENDING);
+    private final ArrayList<Inbound> batch = new ArrayList<>();
+    private final JTextField actualField = new JTextField(3);
+    private final JTextField fakeField   = new JTextField(3);
+
+    public BluffClientSwing(String serverIp, int port) {
+        super("Bluff Client");
+        setDefaultCloseOperation(EXIT_ON_CLOSE);
+        setSize(700, 500);
+        setLayout(new BorderLayout());
+
+        // log area
+        logArea.setEditable(false);
+        add(new JScrollPane(logArea), BorderLayout.CENTER);
+
+        // right: hand (desk of cards)
+        handList.setBorder(BorderFactory.createTitledBorder("Your Hand"));
+        add(new JScrollPane(handList), BorderLayout.EAST);
+
+        // bottom: input and buttons
+        JPanel ctrl = new JPanel();
+        // enter number of actual
+        ctrl.add(new JLabel("Actual:"));
+        ctrl.add(actualField);
+        // enter number of fakes
+        ctrl.add(new JLabel("Fake:"));
+        ctrl.add(fakeField);
+        // buttons for ending turn or calling someone out 
+        JButton submit = new JButton("Submit Move");
+        JButton bluff  = new JButton("Call Bluff");
+        JButton hint   = new JButton("Hint");
+        ctrl.add(submit);
+        ctrl.add(bluff);
+        ctrl.add(hint);
+        add(ctrl, BorderLayout.SOUTH);
+
+        submit.addActionListener(e -> {
+            String a = actualField.getText().trim();
+            String f = fakeField.getText().trim();
+            if (a.isEmpty()||f.isEmpty()) {
+                appendLog("Enter both counts.");
+                return;
+            }
+            int actual, fake;
+            try {
+                actual = Integer.parseInt(a);
+                fake = Integer.parseInt(f);
+            } catch (NumberFormatException ex) {
+                appendLog("Counts must be numbers.");
+                return;
+            }
+            if (actual < 0 || fake < 0 || actual > 127 || fake > 127) {
+                appendLog("Counts must be between 0 and 127.");
+                return;
+            }
+            send(Wire.move(actual, fake));
+            appendLog(">> MOVE " + a + " " + f);
+            actualField.setText("");
+            fakeField.setText("");
+        });
+        bluff.addActionListener(e -> {
+            send(Wire.bluff());
+            appendLog(">> BLUFF");
+        });
+        hint.addActionListener(e -> send(Wire.text("HINT")));
+
+        // draw whatever arrived since last time, in one go
+        new javax.swing.Timer(1000 / FPS, e -> drain()).start();
+
+        // connect in background
+        new Thread(() -> connect(serverIp, port)).start();
+    }
+
+    // one frame from the server, waiting to be drawn
+    private static class Inbound {
+        final byte op;
+        final byte[] payload;
+
+        Inbound(byte op, byte[] payload) {
+            this.op = op;
+            this.payload = payload;
+        }
+    }
+
+    private void connect(String ip, int port) {
+        try {
+            socket = new Socket(ip, port);
+            out    = socket.getOutputStream();
+            // ask for the binary protocol
+            send(new byte[] {Wire.MAGIC});
+            SwingUtilities.invokeLater(() -> appendLog("Connected to server " + ip + ":" + port));
+
+            // reader thread: only queues, the timer does the drawing
+            Wire.readAll(socket.getInputStream(), (op, payload) -> {
+                if (op == Wire.PING) {
+                    // answered straight away, nothing to draw
+                    send(Wire.pong());
+                    return;
+                }
+                try {
+                    pending.put(new Inbound(op, payload));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        } catch (IOException e) {
+            SwingUtilities.invokeLater(() -> appendLog("Connection failed: " + e.getMessage()));
+        }
+    }
+
+    // on the EDT: everything queued becomes one log append and at most one hand update
+    private void drain() {
+        pending.drainTo(batch);
+        if (batch.isEmpty()) {
+            return;
+        }
+        // only the newest lines could stay in the log anyway
+        ArrayDeque<String> lines = new ArrayDeque<>();
+        boolean handChanged = false;
+        for (Inbound f : batch) {
+            if (f.op == Wire.HAND || f.op == Wire.HAND_DELTA) {
+                if (!hand.apply(f.op, f.payload)) {
+                    // missed a change, ask for the whole hand
+                    send(Wire.resync());
+                }
+                handChanged = true;
+                continue;
+            }
+            lines.addLast(Wire.describe(f.op, f.payload));
+            if (lines.size() > LOG_LINES) {
+                lines.removeFirst();
+            }
+        }
+        batch.clear();
+
+        if (handChanged && !hand.isWaiting()) {
+            updateHand();
+        }
+        if (!lines.isEmpty()) {
+            appendLog(String.join("\n", lines));
+        }
+    }
+
+    // only touch the cards that changed since the list was last drawn; it's grouped A, K, Q, J
+    private void updateHand() {
+        int start = 0;
+        for (int card = 0; card < Cards.NUM_TYPES; card++) {
+            int change = hand.count(card) - shown[card];
+            for (int i = 0; i < change; i++) handModel.add(start, Cards.name(card));
+            for (int i = 0; i > change; i--) handModel.remove(start);
+            shown[card] = hand.count(card);
+            start += shown[card];
+        }
+    }
+
+    // called from the EDT, the connect thread and the reader (PONG), so failures are logged via the EDT
+    private synchronized void send(byte[] frame) {
+        if (out == null) {
+            SwingUtilities.invokeLater(() -> appendLog("Not connected."));
+            return;
+        }
+        try {
+            out.write(frame);
+            out.flush();
+        } catch (IOException e) {
+            SwingUtilities.invokeLater(() -> appendLog("Send failed: " + e.getMessage()));
+        }
+    }
+
+    // on the EDT; drops the oldest lines past LOG_LINES so a long session doesn't keep growing
+    private void appendLog(String txt) {
+        logArea.append(txt + "\n");
+        int extra = logArea.getLineCount() - 1 - LOG_LINES;
+        if (extra > 0) {
+            try {
+                logArea.replaceRange("", 0, logArea.getLineStartOffset(extra));
+            } catch (javax.swing.text.BadLocationException e) {
+                // can't happen, the line is there
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length!=2) {
+            System.out.println("Usage: java bluff.BluffClientSwing <server_ip> <port>");
+            System.exit(1);
+        }
+        SwingUtilities.invokeLater(() -> {
+            BluffClientSwing f = new BluffClientSwing(args[0], Integer.parseInt(args[1]));
+            f.setVisible(true);
+        });
+    }
+}
@@ -0,0 +1,285 @@
+package bluff;
+
+import java.util.*;
+import java.util.random.RandomGenerator;
+
+/**
+ * The rules of Bluff with no sockets attached: who holds what, whose turn
+ * it is, what was just played and who is still in. {@link Table} drives
+ * one of these for a real game and {@link Simulation} drives millions of
+ * them with bots.
+ *
+ * Seats are numbered from 0. Nothing here blocks or allocates once the
+ * game is set up.
+ */
+public class BluffGame {
+    public static final int NO_ONE = -1;
+
+    private final Hand[] hands;
+    private final boolean[] alive;
+    private final RandomGenerator rng;
+    private final Cards deck;
+    private int aliveCount;
+    private int round = -1;
+    private int roundCard;
+    private int turn;
+    private int lastSeat = NO_ONE;
+    //packed cards of the last move, see Hand
+    private int lastPlayed;
+    //packed cards each seat has put down since the deal
+    private final int[] playedThisRound;
+    private int winner = NO_ONE;
+    private boolean emptiedHand = false;
+
+    /**
+     * @param hands One hand per seat; the game deals into these
+     * @param rng Source of randomness for shuffling and the starting seat
+     */
+    public BluffGame(Hand[] hands, RandomGenerator rng) {
+        this.hands = hands;
+        this.rng = rng;
+        this.deck = new Cards(rng);
+        this.alive = new boolean[hands.length];
+        this.playedThisRound = new int[hands.length];
+        Arrays.fill(alive, true);
+        this.aliveCount = hands.length;
+    }
+
+    public static BluffGame withSeats(int seats, RandomGenerator rng) {
+        Hand[] hands = new Hand[seats];
+        for (int i = 0; i < seats; i++) {
+            hands[i] = new Hand();
+        }
+        return new BluffGame(hands, rng);
+    }
+
+    /**
+     * Moves to the next round card, deals the whole deck among the seats
+     * still in, and picks a random seat to start.
+     *
+     * @return The round card
+     */
+    public int startRound() {
+        round = (round + 1) % 3;
+        roundCard = switch (round) {
+            case 0 -> Cards.ACE;
+            case 1 -> Cards.KING;
+            default -> Cards.QUEEN;
+        };
+
+        deck.shuffle(rng);
+        for (int seat = 0; seat < hands.length; seat++) {
+            hands[seat].clear();
+        }
+        int seat = nextAlive(hands.length - 1);
+        for (int i = 0; i < Cards.DECK_SIZE; i++) {
+            hands[seat].add(deck.dealCard());
+            seat = nextAlive(seat);
+        }
+
+        //random starting seat
+        turn = nextAlive(hands.length - 1);
+        for (int skip = rng.nextInt(aliveCount); skip > 0; skip--) {
+            turn = nextAlive(turn);
+        }
+        lastSeat = NO_ONE;
+        lastPlayed = 0;
+        Arrays.fill(playedThisRound, 0);
+        return roundCard;
+    }
+
+    /**
+     * Puts a round back exactly as it was dealt, for replaying a
+     * {@link Journal} instead of shuffling.
+     *
+     * @param packedHands Each seat's hand, see {@link Hand#packed()}
+     */
+    public void restoreRound(int roundCard, int turn, int[] packedHands) {
+        round = switch (roundCard) {
+            case Cards.ACE -> 0;
+            case Cards.KING -> 1;
+            default -> 2;
+        };
+        this.roundCard = roundCard;
+        for (int seat = 0; seat < hands.length; seat++) {
+            hands[seat].clear();
+            hands[seat].addAll(packedHands[seat]);
+        }
+        this.turn = turn;
+        lastSeat = NO_ONE;
+        lastPlayed = 0;
+        Arrays.fill(playedThisRound, 0);
+    }
+
+    /**
+     * Makes this game an exact copy of another one with the same number
+     * of seats, so a bot can play it on to see what happens without
+     * touching the real game.
+     */
+    public void copyFrom(BluffGame other) {
+        for (int seat = 0; seat < hands.length; seat++) {
+            hands[seat].clear();
+            hands[seat].addAll(other.hands[seat].packed());
+            alive[seat] = other.alive[seat];
+            playedThisRound[seat] = other.playedThisRound[seat];
+        }
+        aliveCount = other.aliveCount;
+        round = other.round;
+        roundCard = other.roundCard;
+        turn = other.turn;
+        lastSeat = other.lastSeat;
+        lastPlayed = other.lastPlayed;
+        winner = other.winner;
+        emptiedHand = other.emptiedHand;
+    }
+
+    /**
+     * Replaces what the last move really was, for a bot filling in a
+     * guess it can play on from. The count should stay what everyone saw.
+     *
+     * @param played Packed cards
+     */
+    public void assumeLastPlayed(int played) {
+        lastPlayed = played;
+    }
+
+    /**
+     * Plays a move for the seat whose turn it is.
+     *
+     * @return The packed cards played, or -1 if the hand cannot cover it
+     */
+    public int play(int actual, int fake) {
+        int played = hands[turn].play(roundCard, actual, fake);
+        if (played >= 0) {
+            lastSeat = turn;
+            lastPlayed = played;
+            playedThisRound[turn] += played;
+        }
+        return played;
+    }
+
+    /**
+     * Someone called bluff on the last move. Either the liar or the
+     * accuser is out, and the round is over.
+     *
+     * @return The seat that was eliminated
+     */
+    public int callBluff(int accuser) {
+        int out = Hand.isLie(lastPlayed, roundCard) ? lastSeat : accuser;
+        remove(out);
+        return out;
+    }
+
+    /**
+     * Nobody called bluff. Either the mover just emptied their hand and
+     * wins, or play passes to the next seat.
+     *
+     * @return True if the game is over
+     */
+    public boolean endTurn() {
+        if (hands[turn].isEmpty()) {
+            winner = turn;
+            emptiedHand = true;
+            return true;
+        }
+        turn = nextAlive(turn);
+        return false;
+    }
+
+    /**
+     * Takes a seat out of the game for good.
+     */
+    public void remove(int seat) {
+        if (!alive[seat]) {
+            return;
+        }
+        alive[seat] = false;
+        aliveCount--;
+        if (aliveCount == 1) {
+            winner = nextAlive(seat);
+        }
+    }
+
+    private int nextAlive(int seat) {
+        do {
+            seat = (seat + 1) % hands.length;
+        } while (!alive[seat] && aliveCount > 0);
+        return seat;
+    }
+
+    public boolean isOver() {
+        return winner != NO_ONE || aliveCount == 0;
+    }
+
+    public int winner() {
+        return winner;
+    }
+
+    /**
+     * @return True if the winner won by emptying their hand rather than by outlasting everyone
+     */
+    public boolean winnerEmptiedHand() {
+        return emptiedHand;
+    }
+
+    public boolean isAlive(int seat) {
+        return alive[seat];
+    }
+
+    public int seats() {
+        return hands.length;
+    }
+
+    public int aliveCount() {
+        return aliveCount;
+    }
+
+    public int roundCard() {
+        return roundCard;
+    }
+
+    public int turn() {
+        return turn;
+    }
+
+    public int lastSeat() {
+        return lastSeat;
+    }
+
+    /**
+     * What the last move really was. Only the rules should look at this;
+     * players only get to see {@link #lastCount()}.
+     */
+    public int lastPlayed() {
+        return lastPlayed;
+    }
+
+    /**
+     * Everything a seat has put down since the deal. Only that seat knows
+     * what it was; the others only saw how many.
+     *
+     * @return Packed cards, see {@link Hand}
+     */
+    public int playedThisRound(int seat) {
+        return playedThisRound[seat];
+    }
+
+    /**
+     * @return How many cards the last move put down, which everyone saw
+     */
+    public int lastCount() {
+        return Hand.total(lastPlayed);
+    }
+
+    public Hand hand(int seat) {
+        return hands[seat];
+    }
+
+    /**
+     * The game's own generator, for strategies that need randomness and
+     * should stay reproducible from the game's seed.
+     */
+    public RandomGenerator random() {
+        return rng;
+    }
+}
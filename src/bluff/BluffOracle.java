@@ -0,0 +1,92 @@
+package bluff;
+
+import java.util.Arrays;
+
+/**
+ * How likely the last move was a lie, from what a player can see: the
+ * round card, their own hand and what they have put down this round, how
+ * many cards the mover had and how many they put down. Everything is
+ * worked out once, when the class loads, so each answer is a single array
+ * read.
+ *
+ * The chance given is that the mover could not have covered the claim
+ * with round cards and Jacks, taking every card this player has not seen
+ * to be spread at random between the other hands and the pile. It is an
+ * estimate: players lie when they don't have to and keep their real
+ * cards for when it matters, which this does not try to guess.
+ */
+public final class BluffOracle {
+    //round cards and Jacks in the deck, the most any claim can honestly be
+    private static final int HONEST = Cards.NUM_ACES + Cards.NUM_JACKS;
+    private static final int N = Cards.DECK_SIZE + 1;
+    //indexed by honest cards unseen, cards unseen, the mover's hand before the move, cards played
+    private static final float[] CHANCE = new float[(HONEST + 1) * N * N * N];
+
+    static {
+        long[][] choose = new long[N][N];
+        for (int n = 0; n < N; n++) {
+            choose[n][0] = 1;
+            for (int k = 1; k <= n; k++) {
+                choose[n][k] = choose[n - 1][k - 1] + (k < n ? choose[n - 1][k] : 0);
+            }
+        }
+        Arrays.fill(CHANCE, -1);
+        for (int honest = 0; honest <= HONEST; honest++) {
+            for (int unseen = honest; unseen < N; unseen++) {
+                for (int hand = 0; hand <= unseen; hand++) {
+                    //chance the mover held fewer honest cards than each claim, one hypergeometric term at a time
+                    double below = 0;
+                    for (int count = 0; count <= hand; count++) {
+                        CHANCE[index(honest, unseen, hand, count)] = (float) below;
+                        if (count <= honest && hand - count <= unseen - honest) {
+                            below += (double) choose[honest][count] * choose[unseen - honest][hand - count] / choose[unseen][hand];
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private BluffOracle() {
+    }
+
+    private static int index(int honest, int unseen, int hand, int count) {
+        return ((honest * N + unseen) * N + hand) * N + count;
+    }
+
+    /**
+     * @param honest Round cards and Jacks the asking player cannot see
+     * @param unseen All cards the asking player cannot see
+     * @param hand Cards the mover held before the move
+     * @param count Cards the mover put down
+     * @return Chance the mover had fewer than {@code count} honest cards, or -1 if no deal fits
+     */
+    public static double lieChance(int honest, int unseen, int hand, int count) {
+        if (honest < 0 || honest > HONEST || unseen >= N || count < 0 || hand < count || unseen < hand || unseen < honest) {
+            return -1;
+        }
+        return CHANCE[index(honest, unseen, hand, count)];
+    }
+
+    /**
+     * The chance for the move just made, as {@code seat} sees it. The cards
+     * they hold and the cards they have put down this round are the ones
+     * they know the mover can't have.
+     *
+     * @return The chance, or -1 if there is no move for them to judge
+     */
+    public static double lieChance(BluffGame game, int seat) {
+        int mover = game.lastSeat();
+        if (mover == BluffGame.NO_ONE || mover == seat) {
+            return -1;
+        }
+        Hand mine = game.hand(seat);
+        int put = game.playedThisRound(seat);
+        int roundCard = game.roundCard();
+        int honest = Cards.copiesInDeck(roundCard) + Cards.NUM_JACKS - mine.count(roundCard) - mine.count(Cards.JACK)
+            - Hand.count(put, roundCard) - Hand.count(put, Cards.JACK);
+        int unseen = Cards.DECK_SIZE - mine.size() - Hand.total(put);
+        int count = game.lastCount();
+        return lieChance(honest, unseen, game.hand(mover).size() + count, count);
+    }
+}
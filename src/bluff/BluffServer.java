@@ -0,0 +1,339 @@
+package bluff;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+public class BluffServer {
+    //-Dbluff.port, so several servers can share a machine behind a Router
+    private static final int PORT = Integer.getInteger("bluff.port", 12345);
+    //-Dbluff.shards and -Dbluff.shard: how many servers are behind the Router, and which one this is
+    private static final int SHARDS = Math.max(1, Integer.getInteger("bluff.shards", 1));
+    private static final int SHARD = Math.floorMod(Integer.getInteger("bluff.shard", 0), SHARDS);
+    //-Dbluff.router=host:port: where to report load, unset without a router
+    private static final String ROUTER = System.getProperty("bluff.router", "");
+    //players per table, enough that the deck still goes round everyone
+    private static final int TABLE_SIZE = Math.max(2, Math.min(Cards.DECK_SIZE, Integer.getInteger("bluff.tableSize", 4)));
+    //one selector loop per core unless told otherwise
+    private static final int IO_THREADS = Integer.getInteger("bluff.ioThreads", Runtime.getRuntime().availableProcessors());
+    //-Dbluff.botFillMs: how long a player waits for a table before bots take the empty seats, 0 never
+    private static final long BOT_FILL_MS = Long.getLong("bluff.botFillMs", 0);
+    //-Dbluff.botTakeover: bots play on for players who leave a game for good
+    private static final boolean BOT_TAKEOVER = Boolean.getBoolean("bluff.botTakeover");
+    private static String ip_addr;
+    private final Lobby lobby = new Lobby(TABLE_SIZE, this::startTable);
+    //blocking sockets on (virtual) threads instead of selector loops
+    private final boolean threadMode;
+    private IoLoop[] loops;
+    private ExecutorService readers;
+    private int nextLoop = 0;
+    //only IDs this shard owns, see Router.shardOfTable
+    private final AtomicInteger nextTableID = new AtomicInteger(tableIDAfter(0));
+    private final Journal journal;
+    //named players' totals, added to as games end
+    private final Stats stats = Stats.open();
+    //games the last run never finished, rebuilt from the journal
+    private final Map<Integer, Journal.Unfinished> recovered;
+    //session token -> player, for reconnecting to a held seat
+    private final ConcurrentHashMap<Long, ClientHandler> sessions = new ConcurrentHashMap<>();
+    //names held by live sessions, by Stats.key(), so nobody can take the name of someone still connected
+    private final ConcurrentHashMap<String, ClientHandler> names = new ConcurrentHashMap<>();
+    private final SecureRandom tokens = new SecureRandom();
+    //tables with a game going, for spectators to find
+    private final ConcurrentHashMap<Integer, Table> live = new ConcurrentHashMap<>();
+    //one strategy for every bot, it keeps no state; answers well inside the bluff window
+    private final Strategy bots = new MonteCarloStrategy(Math.min(MonteCarloStrategy.THINK_MS, Table.BLUFF_WINDOW_MS / 4));
+
+    public BluffServer(boolean threadMode) {
+        this.threadMode = threadMode;
+        this.recovered = recover();
+        this.journal = Journal.open(recovered);
+    }
+
+    //replays the journal before a new segment is opened after it
+    private Map<Integer, Journal.Unfinished> recover() {
+        if (!Journal.enabled()) {
+            return Map.of();
+        }
+        try {
+            Journal.Recovery recovery = Journal.recover(Paths.get(Journal.DIR));
+            //never hand out a table ID the journal already used
+            nextTableID.set(tableIDAfter(recovery.lastTableID));
+            if (!recovery.unfinished.isEmpty()) {
+                System.out.println("Journal: " + recovery.unfinished.size() + " unfinished game(s) recovered from "
+                    + recovery.records + " records");
+            }
+            return recovery.unfinished;
+        } catch (IOException e) {
+            System.err.println("Journal not replayed: " + e.getMessage());
+            return Map.of();
+        }
+    }
+
+    public static void main(String[] args) {
+        boolean threadMode = args.length > 0 && args[0].equals("--threads");
+        Metrics.start();
+        new BluffServer(threadMode).startServer();
+    }
+
+    public String get_ip_addr() {
+        return ip_addr;
+    }
+
+    public int get_port() {
+        return PORT;
+    }
+
+    private void startServer() {
+        try {
+            ip_addr = InetAddress.getLocalHost().getHostAddress();
+        } catch (UnknownHostException e) {
+            System.err.println("Error:" + e.getMessage());
+        }
+
+        resumeTables();
+        if (!ROUTER.isEmpty()) {
+            reportLoad();
+        }
+        if (threadMode) {
+            startThreadServer();
+            return;
+        }
+
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open();
+             Selector acceptSelector = Selector.open()) {
+            serverChannel.bind(new InetSocketAddress(PORT), 1024);
+            serverChannel.configureBlocking(false);
+            serverChannel.register(acceptSelector, SelectionKey.OP_ACCEPT);
+
+            loops = new IoLoop[Math.max(1, IO_THREADS)];
+            for (int i = 0; i < loops.length; i++) {
+                loops[i] = new IoLoop(i);
+                loops[i].start();
+            }
+
+            System.out.println("Bluff Server started! \nJoin at ip address: " + ip_addr + "\nPort: " + PORT);
+            System.out.println("Or play in a browser: http://" + ip_addr + ":" + PORT + "/");
+            System.out.println("Waiting for players...");
+
+            //accept forever, tables start as soon as there are enough players
+            while (true) {
+                acceptSelector.select();
+                acceptSelector.selectedKeys().clear();
+                SocketChannel channel;
+                while ((channel = serverChannel.accept()) != null) {
+                    accept(channel);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Error Starting the Server");
+        }
+    }
+
+    private void startThreadServer() {
+        readers = newThreadPerTaskExecutor("reader");
+        try (ServerSocket serverSocket = new ServerSocket(PORT, 1024)) {
+            System.out.println("Bluff Server started (thread mode)! \nJoin at ip address: " + ip_addr + "\nPort: " + PORT);
+            System.out.println("Waiting for players...");
+
+            while (true) {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                SocketConnection conn = new SocketConnection(socket);
+                //binds itself to the connection, which hands it everything read
+                new ClientHandler(conn, this);
+                conn.start(readers);
+            }
+        } catch (IOException e) {
+            System.out.println("Error Starting the Server");
+        }
+    }
+
+    private void accept(SocketChannel channel) throws IOException {
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+        //spread connections over the loops
+        IoLoop loop = loops[nextLoop];
+        nextLoop = (nextLoop + 1) % loops.length;
+
+        NioConnection conn = new NioConnection(channel, loop);
+        //binds itself to the connection; it joins the lobby once its first bytes say what it is
+        new ClientHandler(conn, this);
+        loop.register(channel, conn);
+    }
+
+    //puts every recovered game back on a table, its seats held for their players' tokens
+    private void resumeTables() {
+        recovered.forEach((tableID, unfinished) -> {
+            List<ClientHandler> players = new ArrayList<>();
+            for (int seat = 0; seat < unfinished.tokens.length; seat++) {
+                Hand hand = unfinished.game.hand(seat);
+                long token = unfinished.tokens[seat];
+                //bots have no token and come straight back
+                players.add(token == 0 ? new ClientHandler(this, hand, bots) : new ClientHandler(this, hand, token));
+            }
+            runTable(new Table(tableID, players, unfinished.game, journal, stats));
+        });
+    }
+
+    //called by the lobby once it has a full table
+    private void startTable(List<ClientHandler> players) {
+        runTable(new Table(nextTableID.getAndAdd(SHARDS), players, journal, stats));
+    }
+
+    //the first table ID after this one that belongs to this shard
+    private static int tableIDAfter(int tableID) {
+        int next = tableID + 1;
+        return next + Math.floorMod(SHARD - next, SHARDS);
+    }
+
+    //tells the router how busy this shard is every so often, so it knows where to send new players
+    private void reportLoad() {
+        InetSocketAddress router = Router.address(ROUTER);
+        try {
+            DatagramChannel channel = DatagramChannel.open();
+            reportLoad(channel, router);
+            System.out.println("Shard " + SHARD + " of " + SHARDS + ", reporting to the router at " + ROUTER);
+        } catch (IOException e) {
+            System.err.println("Not reporting to the router: " + e.getMessage());
+        }
+    }
+
+    private void runTable(Table table) {
+        live.put(table.getTableID(), table);
+        //the table holds no thread of its own in either mode, it is stepped whenever it is told something
+        table.finished().whenComplete((done, e) -> live.remove(table.getTableID()));
+        table.start();
+    }
+
+    /**
+     * Virtual threads when the JVM has them (Java 21+), otherwise a pool
+     * of daemon platform threads.
+     */
+    static ExecutorService newThreadPerTaskExecutor(String name) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, name);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    //one report, then the next one armed
+    private void reportLoad(DatagramChannel channel, InetSocketAddress router) {
+        String report = Router.loadReport(SHARD, live.size(), sessions.size(), (int) Metrics.LOBBY_PLAYERS.sum(), TABLE_SIZE);
+        try {
+            channel.send(ByteBuffer.wrap(report.getBytes(StandardCharsets.US_ASCII)), router);
+        } catch (IOException e) {
+            //the router may not be up yet, try again next time
+        }
+        Table.TIMER.schedule(() -> reportLoad(channel, router), Router.REPORT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return The table with this number if its game is still going, or null
+     */
+    public Table table(int tableID) {
+        return live.get(tableID);
+    }
+
+    /**
+     * @return The table with the most spectators already, or null if no game is going
+     */
+    public Table anyTable() {
+        Table best = null;
+        for (Table table : live.values()) {
+            if (best == null || table.getGallery().size() > best.getGallery().size()) {
+                best = table;
+            }
+        }
+        return best;
+    }
+
+    public void joinLobby(ClientHandler player) {
+        lobby.join(player);
+        if (BOT_FILL_MS > 0) {
+            Table.TIMER.schedule(() -> lobby.fillWithBots(TimeUnit.MILLISECONDS.toNanos(BOT_FILL_MS),
+                () -> new ClientHandler(this, new Hand(), bots)), BOT_FILL_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return The strategy for a bot to take over a seat, or null if seats are not taken over
+     */
+    Strategy takeoverBot() {
+        return BOT_TAKEOVER ? bots : null;
+    }
+
+    Stats stats() {
+        return stats;
+    }
+
+    /**
+     * @return False if the player had already been given a table
+     */
+    public boolean leaveLobby(ClientHandler player) {
+        return lobby.leave(player);
+    }
+
+    /**
+     * Registers a newly joined player under a fresh random token.
+     */
+    public long openSession(ClientHandler player) {
+        long token;
+        do {
+            token = tokens.nextLong();
+            //0 means no session yet; behind a router the token has to lead back to this shard
+        } while (token == 0 || Router.shardOfToken(token, SHARDS) != SHARD || sessions.putIfAbsent(token, player) != null);
+        return token;
+    }
+
+    //a seat recovered from the journal keeps the token its player already has
+    void holdSession(long token, ClientHandler player) {
+        sessions.put(token, player);
+    }
+
+    public void closeSession(ClientHandler player) {
+        sessions.remove(player.getToken(), player);
+        String name = player.getName();
+        if (name != null) {
+            names.remove(Stats.key(name), player);
+        }
+    }
+
+    /**
+     * Gives a player a name unless someone else still connected holds it,
+     * letting go of any name they had before.
+     *
+     * @return False if the name is taken
+     */
+    public boolean claimName(ClientHandler player, String name) {
+        ClientHandler holder = names.putIfAbsent(Stats.key(name), player);
+        if (holder != null && holder != player) {
+            return false;
+        }
+        String old = player.getName();
+        if (old != null && !Stats.key(old).equals(Stats.key(name))) {
+            names.remove(Stats.key(old), player);
+        }
+        return true;
+    }
+
+    /**
+     * @return The player holding this token, or null
+     */
+    public ClientHandler session(long token) {
+        return sessions.get(token);
+    }
+}
@@ -0,0 +1,257 @@
+package bluff;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * Represents a deck of cards for the Liar's Bar game.
+ * A standard Liar's Bar deck includes:
+ * 6 Kings, 6 Queens, 6 Aces and 2 Jacks (wild)
+ *
+ * Cards are plain small ints everywhere in the game (server, hands,
+ * wire protocol), so they double as array indexes into a {@link Hand}.
+ *
+ * Every deck shuffles with its own generator, normally one per table or
+ * simulated game (see {@link #seed}), so tables dealing at the same time
+ * never touch shared random state, and a seed replays the same deals.
+ */
+public class Cards {
+    // Card types
+    public static final int ACE = 0;
+    public static final int KING = 1;
+    public static final int QUEEN = 2;
+    public static final int JACK = 3;
+    public static final int NUM_TYPES = 4;
+
+    // Short names, indexed by card
+    private static final String[] NAMES = {"A", "K", "Q", "J"};
+
+    // Deck composition
+    public static final int NUM_KINGS = 6;
+    public static final int NUM_QUEENS = 6;
+    public static final int NUM_ACES = 6;
+    public static final int NUM_JACKS = 2;
+    public static final int DECK_SIZE = NUM_KINGS + NUM_QUEENS + NUM_ACES + NUM_JACKS;
+
+    // The full deck of cards
+    private byte[] deck;
+    // This deck's own source of randomness
+    private final RandomGenerator rng;
+    // Current position in the deck when dealing
+    private int currentPosition;
+
+    /**
+     * Creates a new deck of cards for Liar's Bar and shuffles them, with
+     * a generator of its own seeded from the calling thread.
+     */
+    public Cards() {
+        this(new SplittableRandom(ThreadLocalRandom.current().nextLong()));
+    }
+
+    /**
+     * Creates a new deck of cards and shuffles them with the given
+     * generator, so the same seed always gives the same deck.
+     *
+     * @param rng Source of randomness, used by {@link #shuffle()} from then on
+     */
+    public Cards(RandomGenerator rng) {
+        this.rng = rng;
+        deck = new byte[DECK_SIZE];
+
+        // Initialize the deck with the correct number of each card
+        int index = 0;
+
+        // Add Kings
+        for (int i = 0; i < NUM_KINGS; i++) {
+            deck[index++] = KING;
+        }
+
+        // Add Queens
+        for (int i = 0; i < NUM_QUEENS; i++) {
+            deck[index++] = QUEEN;
+        }
+
+        // Add Aces
+        for (int i = 0; i < NUM_ACES; i++) {
+            deck[index++] = ACE;
+        }
+
+        // Add Jacks
+        for (int i = 0; i < NUM_JACKS; i++) {
+            deck[index++] = JACK;
+        }
+
+        // Shuffle the deck
+        shuffle(rng);
+    }
+
+    /**
+     * Shuffles the deck of cards with its own generator.
+     */
+    public void shuffle() {
+        shuffle(rng);
+    }
+
+    /**
+     * Shuffles the deck with the given generator, so a seeded generator
+     * gives the same deal every time.
+     *
+     * @param rng Source of randomness
+     */
+    public void shuffle(RandomGenerator rng) {
+        for (int i = deck.length - 1; i > 0; i--) {
+            int j = rng.nextInt(i + 1);
+            byte temp = deck[i];
+            deck[i] = deck[j];
+            deck[j] = temp;
+        }
+        currentPosition = 0;
+    }
+
+    /**
+     * Seed for the {@code index}th table or game of a run started from
+     * {@code base}. Neighbouring indexes get seeds far apart, so their
+     * generators don't share streams, and a run gives the same deals
+     * however its tables land on threads.
+     *
+     * @param base Seed of the whole run
+     * @param index Table ID or game number
+     * @return Seed for that table's generator
+     */
+    public static long seed(long base, long index) {
+        long z = base + index * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Returns the short name of a card, e.g. "K".
+     *
+     * @param card Card code
+     * @return Its name
+     */
+    public static String name(int card) {
+        return NAMES[card];
+    }
+
+    /**
+     * Returns how many copies of a card a full deck holds.
+     *
+     * @param card Card code
+     * @return Copies in the deck
+     */
+    public static int copiesInDeck(int card) {
+        return switch (card) {
+            case ACE -> NUM_ACES;
+            case KING -> NUM_KINGS;
+            case QUEEN -> NUM_QUEENS;
+            default -> NUM_JACKS;
+        };
+    }
+
+    /**
+     * Looks up a card by its short name.
+     *
+     * @param name Short name such as "K"
+     * @return Card code, or -1 if there is no such card
+     */
+    public static int fromName(String name) {
+        for (int card = 0; card < NUM_TYPES; card++) {
+            if (NAMES[card].equals(name)) {
+                return card;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Deals the next card from the deck.
+     *
+     * @return Card code
+     * @throws IllegalArgumentException if the deck is empty
+     */
+    public int dealCard() {
+        if (currentPosition >= deck.length) {
+            throw new IllegalArgumentException("Not enough cards left in the deck");
+        }
+        return deck[currentPosition++];
+    }
+
+    /**
+     * Deals the specified number of cards from the deck.
+     *
+     * @param numCards Number of cards to deal
+     * @return Array of dealt cards
+     * @throws IllegalArgumentException if not enough cards are left in the deck
+     */
+    public int[] dealCards(int numCards) {
+        if (currentPosition + numCards > deck.length) {
+            throw new IllegalArgumentException("Not enough cards left in the deck");
+        }
+
+        int[] dealtCards = new int[numCards];
+
+        for (int i = 0; i < numCards; i++) {
+            dealtCards[i] = deck[currentPosition++];
+        }
+
+        return dealtCards;
+    }
+
+    /**
+     * Returns the number of cards remaining in the deck.
+     *
+     * @return Number of cards remaining
+     */
+    public int cardsRemaining() {
+        return deck.length - currentPosition;
+    }
+
+    /**
+     * Prints the current deck state (for debugging).
+     */
+    public void printDeck() {
+        System.out.println("Current deck state:");
+        for (int i = 0; i < deck.length; i++) {
+            if (i == currentPosition) {
+                System.out.print(" | "); // Mark the current position
+            }
+            System.out.print(name(deck[i]) + " ");
+        }
+        System.out.println();
+        System.out.println("Cards remaining: " + cardsRemaining());
+    }
+
+    /**
+     * Simple test of the Cards class functionality.
+     */
+    public static void main(String[] args) {
+        Cards cards = new Cards();
+        System.out.println("Created a new deck of Liar's Bar cards");
+
+        // Print initial deck
+        cards.printDeck();
+
+        // Deal some cards
+        int cardsToDeal = 5;
+        System.out.println("\nDealing " + cardsToDeal + " cards:");
+        int[] hand = cards.dealCards(cardsToDeal);
+
+        // Print the dealt hand
+        for (int card : hand) {
+            System.out.print(name(card) + " ");
+        }
+        System.out.println();
+
+        // Print remaining deck
+        System.out.println("\nAfter dealing:");
+        cards.printDeck();
+
+        // Shuffle and start over
+        System.out.println("\nShuffling the deck...");
+        cards.shuffle();
+        cards.printDeck();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,541 @@
+package bluff;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+public class ClientHandler {
+    //how long a seated player who dropped has to reconnect before they are out
+    public static final long RECONNECT_MS = Long.getLong("bluff.reconnectMs", 30000);
+
+    //replaced when the player reconnects
+    private volatile Connection conn;
+    private final BluffServer server;
+    public final Hand hand;
+    //the hand as the client last heard about it, and that version's number (guarded by handLock)
+    private final Object handLock = new Object();
+    private int shownHand = 0;
+    private int handVersion = 0;
+    private volatile Table table;
+    //given out on joining, a new connection presenting it takes over this seat
+    private volatile long token;
+    //seated but without a connection, waiting out the grace window (guarded by this)
+    private boolean away = false;
+    //counts disconnects so a stale grace timer can tell it was overtaken (guarded by this)
+    private int awayCount = 0;
+    //no more reconnecting: out of the game, or the game is over (guarded by this)
+    private boolean gone = false;
+    //set by the connection when the slow-consumer policy is ELIMINATE
+    private volatile boolean tooSlow = false;
+    //the table this connection watches instead of playing, if any
+    private volatile Gallery watching;
+    //plays this seat instead of a person, null for people
+    private final Strategy bot;
+    private int playerID;
+    //what their results are kept under across games, null if they never said
+    private volatile String name;
+    //lobby bookkeeping: whoever flips inLobby off first either seats them or lets them leave
+    final AtomicBoolean inLobby = new AtomicBoolean();
+    long lobbySince;
+
+    public ClientHandler(Connection conn, BluffServer server) {
+        this.conn = conn;
+        this.server = server;
+        this.hand = new Hand();
+        this.bot = null;
+        conn.bind(this);
+    }
+
+    /**
+     * A seat from a game the last run never finished, waiting for its
+     * player to come back with their token.
+     */
+    ClientHandler(BluffServer server, Hand hand, long token) {
+        this.conn = Connection.NONE;
+        this.server = server;
+        this.hand = hand;
+        //as dealt before the restart, so it is what comes back on resuming
+        this.shownHand = hand.packed();
+        this.token = token;
+        this.bot = null;
+        server.holdSession(token, this);
+        synchronized (this) {
+            goAway();
+        }
+    }
+
+    /**
+     * A bot: no connection and no session, the table asks
+     * {@code strategy} for its moves and BLUFF calls instead.
+     */
+    ClientHandler(BluffServer server, Hand hand, Strategy strategy) {
+        this.conn = Connection.NONE;
+        this.server = server;
+        this.hand = hand;
+        this.bot = strategy;
+    }
+
+    /**
+     * A bot to play on in this player's seat, with their cards, once
+     * they are gone for good.
+     *
+     * @return The bot, or null if the server leaves empty seats empty
+     */
+    ClientHandler botInstead() {
+        Strategy strategy = server.takeoverBot();
+        return strategy == null ? null : new ClientHandler(server, hand, strategy);
+    }
+
+    /**
+     * @return How this seat plays if it is a bot, otherwise null
+     */
+    public Strategy getBot() {
+        return bot;
+    }
+
+    public long getToken() {
+        return token;
+    }
+
+    public int getPlayerID() {
+        return playerID;
+    }
+
+    public Table getTable() {
+        return table;
+    }
+
+    public void seat(Table table, int playerID) {
+        this.table = table;
+        this.playerID = playerID;
+        sendMessage("You are Player " + playerID);
+    }
+
+    /**
+     * Tells the client its hand changed. Binary clients only get what
+     * changed, as the next hand version; text clients see the whole hand.
+     * Called on the table thread, the only one that changes the hand.
+     */
+    public void sendHand() {
+        synchronized (handLock) {
+            int now = hand.packed();
+            int before = shownHand;
+            shownHand = now;
+            if (!conn.isBinary()) {
+                conn.announce(Announcement.hand(now));
+            } else if (now != before) {
+                handVersion++;
+                conn.sendHandDelta(handVersion, before, now);
+            }
+        }
+    }
+
+    /**
+     * Sends the whole hand as of the last version, for a client that lost
+     * track or just reconnected. Safe from any thread.
+     */
+    public void sendWholeHand() {
+        synchronized (handLock) {
+            if (conn.isBinary()) {
+                conn.sendFrame(Wire.hand(shownHand, handVersion));
+            } else {
+                Hand shown = new Hand();
+                shown.addAll(shownHand);
+                sendMessage(Wire.handText(shown));
+            }
+        }
+    }
+
+    /**
+     * Called by the table when it is this player's turn. The move comes
+     * back to the table from the I/O thread; nobody waits for it.
+     */
+    public void promptMove(int roundCard) {
+        sendYourTurn(roundCard);
+    }
+
+    private void sendYourTurn(int roundCard) {
+        //binary clients already have the hand, it's kept up to date as it changes
+        conn.announce(Announcement.yourTurn(roundCard));
+        if (!conn.isBinary()) {
+            sendHand();
+            conn.announce(Announcement.prompt(roundCard));
+        }
+    }
+
+    /**
+     * Called by the connection for every line a text client sends.
+     */
+    public void receive(String line) {
+        String trimmed = line.trim();
+        if (trimmed.equalsIgnoreCase("BLUFF")) {
+            callBluff();
+            return;
+        }
+        if (trimmed.equalsIgnoreCase("WATCH") || trimmed.regionMatches(true, 0, "WATCH ", 0, 6)) {
+            watch(trimmed.substring(5).trim());
+            return;
+        }
+        if (trimmed.equalsIgnoreCase("HINT")) {
+            Table t = table;
+            if (t != null) {
+                t.hint(this);
+            }
+            return;
+        }
+        if (trimmed.regionMatches(true, 0, "NAME ", 0, 5)) {
+            name(trimmed.substring(5).trim());
+            return;
+        }
+        if (trimmed.equalsIgnoreCase("STATS") || trimmed.regionMatches(true, 0, "STATS ", 0, 6)) {
+            stats(trimmed.substring(5).trim());
+            return;
+        }
+        if (trimmed.equalsIgnoreCase("TOP")) {
+            List<String> board = server.stats().leaderboard();
+            sendMessage(board.isEmpty() ? "No named player has won a game yet." : "Leaderboard:");
+            for (String place : board) {
+                sendMessage(place);
+            }
+            return;
+        }
+        if (trimmed.regionMatches(true, 0, "RESUME ", 0, 7)) {
+            try {
+                resume(Long.parseUnsignedLong(trimmed.substring(7).trim(), 16));
+            } catch (NumberFormatException e) {
+                sendMessage("Cannot resume: that is not a session token.");
+            }
+            return;
+        }
+        move(parseMove(line));
+    }
+
+    /**
+     * Parses a move like "MOVE 2 1" without splitting the line. The first
+     * word is not checked, as before.
+     *
+     * @return The move packed with {@link Strategy#move(int, int)}, or -1,
+     *         which the table answers with "Invalid input"
+     */
+    public static int parseMove(String line) {
+        return Command.parseMove(line);
+    }
+
+    /**
+     * Called by the connection for every frame a binary client sends.
+     */
+    public void receiveFrame(byte opcode, byte[] payload) {
+        switch (opcode) {
+            case Wire.MOVE -> move(payload.length == 2 ? Command.move(payload[0], payload[1]) : Command.INVALID);
+            case Wire.BLUFF -> callBluff();
+            case Wire.RESUME -> {
+                if (payload.length == 8) {
+                    resume(Wire.tokenOf(payload));
+                }
+            }
+            case Wire.RESYNC -> {
+                Metrics.RESYNCS.increment();
+                sendWholeHand();
+            }
+            case Wire.TEXT -> receive(new String(payload, StandardCharsets.UTF_8));
+            default -> {
+                //nothing else comes from clients
+            }
+        }
+    }
+
+    private void name(String wanted) {
+        if (server.stats() == Stats.OFF) {
+            sendMessage("This server does not keep results.");
+            return;
+        }
+        if (!Stats.validName(wanted)) {
+            sendMessage("A name is 1 to " + Stats.MAX_NAME + " letters, digits, _ or -.");
+            return;
+        }
+        if (!server.claimName(this, wanted)) {
+            sendMessage(wanted + " is being used by someone connected right now, pick another name.");
+            return;
+        }
+        name = wanted;
+        sendMessage("Your results are kept as " + wanted + " from your next game on.");
+    }
+
+    private void stats(String whose) {
+        String who = whose.isEmpty() ? name : whose;
+        if (who == null) {
+            sendMessage("Pick a name with NAME <name> to have your results kept.");
+            return;
+        }
+        String line = server.stats().describe(who);
+        sendMessage(line != null ? line : "No finished games for " + who + " yet.");
+    }
+
+    private void move(int move) {
+        Table t = table;
+        if (t != null) {
+            t.move(this, move);
+        }
+    }
+
+    private void callBluff() {
+        Table t = table;
+        if (t != null) {
+            t.callBluff(this);
+        }
+    }
+
+    /**
+     * A client on a new connection sent the token it was given before. If
+     * that player is still seated, this connection takes over their seat
+     * and this handler, which only ever sat in the lobby, is dropped.
+     */
+    private void resume(long oldToken) {
+        ClientHandler seat = server.session(oldToken);
+        if (seat == null || seat == this || table != null) {
+            sendMessage("Cannot resume: that seat is no longer held.");
+            return;
+        }
+        //normally this comes with the first bytes, before ready() puts us in the lobby
+        boolean joined = token != 0;
+        //otherwise out of the lobby first, so this connection never ends up at two tables
+        if (joined && !server.leaveLobby(this)) {
+            sendMessage("Cannot resume: you already have a new table.");
+            return;
+        }
+        if (!seat.reattach(conn)) {
+            sendMessage("Cannot resume: that seat is no longer held.");
+            if (joined) {
+                server.joinLobby(this);
+            }
+            return;
+        }
+        if (joined) {
+            server.closeSession(this);
+        }
+    }
+
+    /**
+     * Makes this connection a spectator of a table instead of a player
+     * waiting for one. Like a RESUME, this normally comes with the first
+     * bytes, before the lobby.
+     *
+     * @param which Table number, or empty or "any" for any table
+     */
+    private void watch(String which) {
+        if (table != null || watching != null) {
+            sendMessage("You can only start watching while waiting for a table.");
+            return;
+        }
+        Table t = null;
+        try {
+            t = which.isEmpty() || which.equalsIgnoreCase("any") ? server.anyTable() : server.table(Integer.parseInt(which));
+        } catch (NumberFormatException e) {
+            //no such table
+        }
+        if (t == null) {
+            sendMessage("No game to watch" + (which.isEmpty() ? " yet." : " at table " + which + "."));
+            return;
+        }
+        boolean joined = token != 0;
+        if (joined && !server.leaveLobby(this)) {
+            sendMessage("Cannot watch: you already have a table.");
+            return;
+        }
+        t.catchUpWatcher(conn);
+        Gallery gallery = t.getGallery();
+        watching = gallery;
+        if (!gallery.add(conn)) {
+            watching = null;
+            sendMessage("That game just finished.");
+            if (joined) {
+                server.joinLobby(this);
+            }
+            return;
+        }
+        if (joined) {
+            server.closeSession(this);
+        }
+    }
+
+    /**
+     * Moves this player onto a new connection and sends what they missed
+     * while they were gone: their seat, the round, their hand, whose turn
+     * it is, and the prompt again if they owe a move.
+     *
+     * @return False if the seat was already given up
+     */
+    boolean reattach(Connection fresh) {
+        Connection stale;
+        synchronized (this) {
+            if (gone) {
+                return false;
+            }
+            stale = conn;
+            conn = fresh;
+            fresh.bind(this);
+            if (away) {
+                away = false;
+                Metrics.AWAY_PLAYERS.decrement();
+            }
+            awayCount++;
+        }
+        //a half-open socket we hadn't noticed yet; its disconnect is ignored now it's replaced
+        stale.close();
+        Metrics.RECONNECTS.increment();
+        sendSession();
+
+        sendMessage("Reconnected, your seat was kept.");
+        Table t = table;
+        if (t != null) {
+            //the prompt comes again with it if they owe a move
+            t.catchUp(this);
+        }
+        return true;
+    }
+
+    /**
+     * Called by the connection once the socket is gone. A seated player
+     * keeps their seat for {@link #RECONNECT_MS} in case they come back.
+     */
+    public void disconnected(Connection from) {
+        synchronized (this) {
+            if (from != conn) {
+                //an old connection someone reconnected past
+                return;
+            }
+            if (watching != null) {
+                watching.remove(from);
+                return;
+            }
+            if (table != null && !gone) {
+                goAway();
+                return;
+            }
+        }
+        server.closeSession(this);
+        Table t = table;
+        if (t == null) {
+            server.leaveLobby(this);
+        } else {
+            t.left(this);
+        }
+    }
+
+    //holds the seat open for a while; caller holds the lock
+    private void goAway() {
+        away = true;
+        int count = ++awayCount;
+        Metrics.AWAY_PLAYERS.increment();
+        Table.TIMER.schedule(() -> expire(count), RECONNECT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void expire(int count) {
+        synchronized (this) {
+            if (!away || count != awayCount) {
+                //came back in time
+                return;
+            }
+            away = false;
+            gone = true;
+        }
+        Metrics.AWAY_PLAYERS.decrement();
+        server.closeSession(this);
+        //the table takes them out when their turn comes, as if they had just left
+        Table t = table;
+        if (t != null) {
+            t.left(this);
+        }
+    }
+
+    /**
+     * Called by the connection when this client stopped reading and the
+     * slow-consumer policy says to take them out of the game.
+     */
+    public void slowConsumer() {
+        tooSlow = true;
+    }
+
+    /**
+     * @return True once the seat can't be taken back: out of the game, or
+     *         away for longer than the reconnect window
+     */
+    public synchronized boolean isGone() {
+        return gone;
+    }
+
+    /**
+     * @return The name results are kept under, or null
+     */
+    public String getName() {
+        return name;
+    }
+
+    public boolean isTooSlow() {
+        return tooSlow;
+    }
+
+    public void sendMessage(String message) {
+        conn.send(message);
+    }
+
+    public void sendRoundStart(int roundCard) {
+        conn.announce(Announcement.round(roundCard));
+    }
+
+    public void sendTurn(int id) {
+        conn.announce(Announcement.turn(id));
+    }
+
+    public void announce(Announcement announcement) {
+        conn.announce(announcement);
+    }
+
+    public void sendEliminated() {
+        if (conn.isBinary()) {
+            conn.sendFrame(Wire.frame(Wire.ELIMINATED, (byte) playerID));
+        } else {
+            sendMessage(Wire.eliminatedText());
+        }
+    }
+
+    /**
+     * Called by the table when this player is out or the game is over;
+     * there is nothing left to reconnect to.
+     */
+    public void close() {
+        synchronized (this) {
+            gone = true;
+            if (away) {
+                away = false;
+                Metrics.AWAY_PLAYERS.decrement();
+            }
+        }
+        server.closeSession(this);
+        conn.close();
+    }
+
+    /**
+     * Called by the connection once it knows which protocol the client
+     * speaks, so everything from the welcome on arrives in that form.
+     */
+    public void ready() {
+        if (token != 0 || watching != null) {
+            //this connection resumed a held seat, or started watching, before it got this far
+            return;
+        }
+        sendMessage("Welcome to Bluff! Waiting for other players...");
+        token = server.openSession(this);
+        sendSession();
+        server.joinLobby(this);
+    }
+
+    private void sendSession() {
+        if (conn.isBinary()) {
+            conn.sendFrame(Wire.session(Wire.SESSION, token));
+        } else {
+            sendMessage(Wire.sessionText(token));
+        }
+    }
+}
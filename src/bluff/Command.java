@@ -0,0 +1,147 @@
+package bluff;
+
+/**
+ * Something a table has been told, packed into one long so that telling
+ * it allocates nothing: what happened, whose seat it concerns, a move
+ * (packed with {@link Strategy#move(int, int)}) and which stage of the
+ * game it belongs to, so a timer or a bot that answers late can be told
+ * apart from one that is on time.
+ *
+ *   [kind 8][seat 8][move 16][stage 32]
+ */
+final class Command {
+    //0 is left for "nothing queued"
+    static final int START = 1;
+    static final int MOVE = 2;       //a person's move, parsed on the I/O thread
+    static final int BOT_MOVE = 3;   //a bot's move, for the stage it was asked in
+    static final int BLUFF = 4;      //someone called bluff during the stage's window
+    static final int WINDOW_CLOSED = 5;
+    static final int OUT_OF_TIME = 6;
+    static final int LEFT = 7;       //a player gave up their seat, e.g. never came back
+    static final int CATCH_UP = 8;   //a player reconnected and needs to see where the game is
+    static final int HINT = 9;       //a player asked how likely the last move was a lie
+
+    //a move that could not be read
+    static final int INVALID = -1;
+
+    private Command() {
+    }
+
+    /**
+     * The commands waiting for one table, oldest first, from any thread.
+     * A ring of longs under a lock: a table is told a few things a second,
+     * and a lock nobody else wants costs next to nothing.
+     */
+    static final class Queue {
+        private long[] ring = new long[16];
+        private int head = 0;
+        private int size = 0;
+
+        synchronized void add(long command) {
+            if (size == ring.length) {
+                long[] bigger = new long[ring.length * 2];
+                for (int i = 0; i < size; i++) {
+                    bigger[i] = ring[(head + i) & (ring.length - 1)];
+                }
+                ring = bigger;
+                head = 0;
+            }
+            ring[(head + size) & (ring.length - 1)] = command;
+            size++;
+        }
+
+        /**
+         * @return The oldest command, or 0 if there is none
+         */
+        synchronized long poll() {
+            if (size == 0) {
+                return 0;
+            }
+            long command = ring[head];
+            head = (head + 1) & (ring.length - 1);
+            size--;
+            return command;
+        }
+
+        synchronized boolean isEmpty() {
+            return size == 0;
+        }
+    }
+
+    static long of(int kind, int seat, int move, int stage) {
+        return (long) kind << 56 | (long) (seat & 0xFF) << 48 | (long) (move & 0xFFFF) << 32 | (stage & 0xFFFFFFFFL);
+    }
+
+    static int kind(long command) {
+        return (int) (command >>> 56);
+    }
+
+    static int seat(long command) {
+        return (int) (command >>> 48) & 0xFF;
+    }
+
+    /**
+     * @return The move, or {@link #INVALID}
+     */
+    static int move(long command) {
+        int move = (int) (command >>> 32) & 0xFFFF;
+        return move == 0xFFFF ? INVALID : move;
+    }
+
+    static int stage(long command) {
+        return (int) command;
+    }
+
+    /**
+     * Parses a move like "MOVE 2 1" in place, without splitting the line.
+     * The first word is not checked and anything after the two numbers is
+     * ignored, as before.
+     *
+     * @return The move packed with {@link Strategy#move(int, int)}, or {@link #INVALID}
+     */
+    static int parseMove(String line) {
+        int i = skipSpaces(line, 0);
+        //past the first word
+        while (i < line.length() && !Character.isWhitespace(line.charAt(i))) {
+            i++;
+        }
+        i = skipSpaces(line, i);
+        int actualEnd = numberEnd(line, i);
+        if (actualEnd < 0) {
+            return INVALID;
+        }
+        int actual = Integer.parseInt(line, i, actualEnd, 10);
+        i = skipSpaces(line, actualEnd);
+        int fakeEnd = numberEnd(line, i);
+        if (fakeEnd < 0) {
+            return INVALID;
+        }
+        int fake = Integer.parseInt(line, i, fakeEnd, 10);
+        //a byte each, like a binary MOVE
+        return actual > Byte.MAX_VALUE || fake > Byte.MAX_VALUE ? INVALID : Strategy.move(actual, fake);
+    }
+
+    /**
+     * @return The move from a binary MOVE frame's two bytes, or {@link #INVALID}
+     */
+    static int move(byte actual, byte fake) {
+        return actual < 0 || fake < 0 ? INVALID : Strategy.move(actual, fake);
+    }
+
+    //where a number of one to three digits starting at i ends, or -1 if there isn't one there
+    private static int numberEnd(String line, int i) {
+        int end = i;
+        while (end < line.length() && line.charAt(end) >= '0' && line.charAt(end) <= '9') {
+            end++;
+        }
+        boolean separate = end == line.length() || Character.isWhitespace(line.charAt(end));
+        return end > i && end - i <= 3 && separate ? end : -1;
+    }
+
+    private static int skipSpaces(String line, int i) {
+        while (i < line.length() && Character.isWhitespace(line.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,86 @@
+package bluff;
+
+/**
+ * A transport for one player. The server only ever talks to players
+ * through this, so the game code does not care how the bytes move.
+ */
+public interface Connection {
+    //-Dbluff.heartbeatMs: how often a quiet binary or browser client is pinged, 0 never
+    long HEARTBEAT_MS = Long.getLong("bluff.heartbeatMs", 15_000);
+    //-Dbluff.idleMs: how long a pinged client may stay silent before it is taken for gone, 0 never
+    long IDLE_MS = Long.getLong("bluff.idleMs", 45_000);
+
+    /**
+     * Stands in for a player who has not connected yet, such as a seat
+     * recovered from the {@link Journal}. Everything sent to it is dropped.
+     */
+    Connection NONE = new Connection() {
+        @Override
+        public void bind(ClientHandler handler) {
+        }
+
+        @Override
+        public void send(String line) {
+        }
+
+        @Override
+        public void sendFrame(byte[] frame) {
+        }
+
+        @Override
+        public void sendHandDelta(int version, int before, int after) {
+        }
+
+        @Override
+        public void announce(Announcement announcement) {
+        }
+
+        @Override
+        public boolean isBinary() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    /**
+     * Binds the player that inbound lines should be delivered to.
+     */
+    void bind(ClientHandler handler);
+
+    /**
+     * Queues one line of text to the client. Never blocks the caller.
+     */
+    void send(String line);
+
+    /**
+     * Queues one binary frame (see {@link Wire}). Only valid once the
+     * client has switched to the binary protocol. The bytes are copied,
+     * so the array can be reused once this returns.
+     */
+    void sendFrame(byte[] frame);
+
+    /**
+     * Queues a HAND_DELTA frame, encoded straight into the outbox (see
+     * {@link Wire#putHandDelta}). Binary clients only.
+     */
+    void sendHandDelta(int version, int before, int after);
+
+    /**
+     * Queues a public event in whichever form this client speaks, sharing
+     * the bytes with every other connection it goes to. Never blocks.
+     */
+    void announce(Announcement announcement);
+
+    /**
+     * True once the client has asked for the binary protocol.
+     */
+    boolean isBinary();
+
+    /**
+     * Closes the connection. Safe to call more than once.
+     */
+    void close();
+}
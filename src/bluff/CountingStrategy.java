@@ -0,0 +1,33 @@
+package bluff;
+
+/**
+ * Tells the truth whenever it can and only calls bluff when the claim is
+ * impossible given its own hand, e.g. three Kings claimed while it holds
+ * four of the six Kings and one of the two Jacks.
+ */
+public class CountingStrategy implements Strategy {
+    @Override
+    public int chooseMove(BluffGame game, int seat) {
+        Hand hand = game.hand(seat);
+        int real = hand.count(game.roundCard());
+        if (real > 0) {
+            return Strategy.move(real, 0);
+        }
+        //nothing real, get rid of Jacks before plain cards
+        int jacks = hand.count(Cards.JACK);
+        return Strategy.move(0, jacks > 0 ? jacks : 1);
+    }
+
+    @Override
+    public boolean callBluff(BluffGame game, int seat) {
+        Hand hand = game.hand(seat);
+        int roundCard = game.roundCard();
+        int honestLeft = Cards.copiesInDeck(roundCard) + Cards.NUM_JACKS - hand.count(roundCard) - hand.count(Cards.JACK);
+        return game.lastCount() > honestLeft;
+    }
+
+    @Override
+    public String toString() {
+        return "counting";
+    }
+}
@@ -0,0 +1,102 @@
+package bluff;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Everyone watching one table. Spectators get the table's public events
+ * and nothing else, and they never hold the table up: the table only
+ * drops each {@link Announcement} on a queue, and a fan-out thread queues
+ * a view of its shared bytes in every watcher's outbox. A watcher too slow to
+ * keep up is dealt with by the slow-consumer policy like anyone else.
+ */
+public class Gallery {
+    //shared by every table; -Dbluff.fanoutThreads
+    private static final ExecutorService FANOUT = Executors.newFixedThreadPool(
+        Math.max(1, Integer.getInteger("bluff.fanoutThreads", 2)), r -> {
+            Thread t = new Thread(r, "bluff-fanout");
+            t.setDaemon(true);
+            return t;
+        });
+    //queued after the last event, sends everyone home
+    private static final Announcement END = Announcement.text("");
+
+    private final Set<Connection> watchers = ConcurrentHashMap.newKeySet();
+    private final ConcurrentLinkedQueue<Announcement> pending = new ConcurrentLinkedQueue<>();
+    //one drain at a time, so every watcher sees the events in order
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private volatile boolean closed = false;
+
+    /**
+     * @return False if the game is already over
+     */
+    public boolean add(Connection watcher) {
+        watchers.add(watcher);
+        Metrics.SPECTATORS.increment();
+        //checked after adding, so either this sees it or close() sees the watcher
+        if (closed) {
+            remove(watcher);
+            return false;
+        }
+        return true;
+    }
+
+    public void remove(Connection watcher) {
+        if (watchers.remove(watcher)) {
+            Metrics.SPECTATORS.decrement();
+        }
+    }
+
+    public int size() {
+        return watchers.size();
+    }
+
+    /**
+     * Queues an event for every watcher and returns at once. With nobody
+     * watching it costs nothing.
+     */
+    public void post(Announcement announcement) {
+        if (watchers.isEmpty()) {
+            return;
+        }
+        pending.add(announcement);
+        kick();
+    }
+
+    /**
+     * The game is over. Watchers are let go once everything posted so far
+     * has reached them.
+     */
+    public void close() {
+        closed = true;
+        pending.add(END);
+        kick();
+    }
+
+    private void kick() {
+        if (draining.compareAndSet(false, true)) {
+            FANOUT.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        do {
+            Announcement next;
+            while ((next = pending.poll()) != null) {
+                long start = System.nanoTime();
+                for (Connection watcher : watchers) {
+                    if (next == END) {
+                        remove(watcher);
+                        watcher.close();
+                    } else {
+                        watcher.announce(next);
+                    }
+                }
+                Metrics.SPECTATOR_FANOUT.recordNanos(System.nanoTime() - start);
+            }
+            draining.set(false);
+            //something posted after the last poll but before the flag dropped is ours to send too
+        } while (!pending.isEmpty() && draining.compareAndSet(false, true));
+    }
+}
@@ -0,0 +1,156 @@
+package bluff;
+
+/**
+ * A player's hand, stored as a count per card type instead of a list.
+ * With only four card types every operation is a handful of array reads,
+ * and playing a move allocates nothing.
+ *
+ * A set of played cards is packed into one int, 8 bits per card type,
+ * so a move can be remembered and checked without an object either.
+ */
+public class Hand {
+    private final int[] counts = new int[Cards.NUM_TYPES];
+    private int size;
+
+    /**
+     * Adds one card to the hand.
+     *
+     * @param card Card code
+     */
+    public void add(int card) {
+        counts[card]++;
+        size++;
+    }
+
+    /**
+     * Puts back every card of a packed play.
+     *
+     * @param played Packed cards, as returned by {@link #play}
+     */
+    public void addAll(int played) {
+        for (int card = 0; card < Cards.NUM_TYPES; card++) {
+            int n = count(played, card);
+            counts[card] += n;
+            size += n;
+        }
+    }
+
+    public void clear() {
+        for (int card = 0; card < Cards.NUM_TYPES; card++) {
+            counts[card] = 0;
+        }
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The whole hand packed the same way as a move, so {@link #addAll} can put it back
+     */
+    public int packed() {
+        int packed = 0;
+        for (int card = 0; card < Cards.NUM_TYPES; card++) {
+            packed += pack(card, counts[card]);
+        }
+        return packed;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param card Card code
+     * @return How many of that card the hand holds
+     */
+    public int count(int card) {
+        return counts[card];
+    }
+
+    /**
+     * Takes a move out of the hand: {@code actual} copies of the round card
+     * and {@code fake} cards that are not the round card. Fakes come from
+     * the other plain cards first and only then from the Jacks.
+     *
+     * @param roundCard The card everyone is claiming this round
+     * @param actual Number of real round cards to play
+     * @param fake Number of other cards to play
+     * @return The packed cards played, or -1 (hand untouched) if the hand cannot cover the move
+     */
+    public int play(int roundCard, int actual, int fake) {
+        if (actual < 0 || fake < 0 || actual > counts[roundCard] || fake > size - counts[roundCard]) {
+            return -1;
+        }
+
+        int played = pack(roundCard, actual);
+        counts[roundCard] -= actual;
+
+        //plain cards of the other two ranks, then the wild Jacks
+        int left = fake;
+        for (int card = 0; card < Cards.NUM_TYPES && left > 0; card++) {
+            if (card == roundCard || card == Cards.JACK) {
+                continue;
+            }
+            int n = Math.min(left, counts[card]);
+            counts[card] -= n;
+            played += pack(card, n);
+            left -= n;
+        }
+        if (left > 0) {
+            counts[Cards.JACK] -= left;
+            played += pack(Cards.JACK, left);
+        }
+
+        size -= actual + fake;
+        return played;
+    }
+
+    /**
+     * Formats the hand like a list of card names, e.g. [A, A, K, J].
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int card = 0; card < Cards.NUM_TYPES; card++) {
+            for (int i = 0; i < counts[card]; i++) {
+                if (sb.length() > 1) {
+                    sb.append(", ");
+                }
+                sb.append(Cards.name(card));
+            }
+        }
+        return sb.append(']').toString();
+    }
+
+    // ----- packed plays -----
+
+    public static int pack(int card, int n) {
+        return n << (card * 8);
+    }
+
+    public static int count(int played, int card) {
+        return (played >>> (card * 8)) & 0xFF;
+    }
+
+    public static int total(int played) {
+        int total = 0;
+        for (int card = 0; card < Cards.NUM_TYPES; card++) {
+            total += count(played, card);
+        }
+        return total;
+    }
+
+    /**
+     * A play is a lie if it holds anything other than the round card and Jacks.
+     *
+     * @param played Packed cards
+     * @param roundCard The card that was claimed
+     * @return True if at least one card was neither
+     */
+    public static boolean isLie(int played, int roundCard) {
+        int honest = pack(roundCard, 0xFF) | pack(Cards.JACK, 0xFF);
+        return (played & ~honest) != 0;
+    }
+}
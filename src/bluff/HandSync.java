@@ -0,0 +1,71 @@
+package bluff;
+
+/**
+ * A client's copy of its own hand, kept in step with the server by
+ * applying HAND and HAND_DELTA frames in version order. If a version goes
+ * missing (say the server dropped messages for a slow client) the copy
+ * stops changing until a full HAND arrives, and the caller is told once
+ * to ask for one with {@link Wire#resync()}.
+ */
+public class HandSync {
+    private final int[] counts = new int[Cards.NUM_TYPES];
+    private int version = 0;
+    private boolean waiting = false;
+
+    /**
+     * Applies a HAND or HAND_DELTA frame.
+     *
+     * @return False if a version was skipped and the caller should send RESYNC
+     */
+    public boolean apply(byte opcode, byte[] p) {
+        if (opcode == Wire.HAND) {
+            for (int card = 0; card < Cards.NUM_TYPES; card++) {
+                counts[card] = p[card];
+            }
+            version = ((p[Cards.NUM_TYPES] & 0xFF) << 8) | (p[Cards.NUM_TYPES + 1] & 0xFF);
+            waiting = false;
+            return true;
+        }
+
+        int next = ((p[0] & 0xFF) << 8) | (p[1] & 0xFF);
+        if (waiting) {
+            //already asked, ignore deltas until the full hand comes
+            return true;
+        }
+        if (next != ((version + 1) & 0xFFFF)) {
+            waiting = true;
+            return false;
+        }
+        for (int card = 0; card < Cards.NUM_TYPES; card++) {
+            counts[card] += p[2 + card];
+        }
+        version = next;
+        return true;
+    }
+
+    public int count(int card) {
+        return counts[card];
+    }
+
+    public int size() {
+        int size = 0;
+        for (int n : counts) {
+            size += n;
+        }
+        return size;
+    }
+
+    public boolean isWaiting() {
+        return waiting;
+    }
+
+    public Hand hand() {
+        Hand hand = new Hand();
+        for (int card = 0; card < Cards.NUM_TYPES; card++) {
+            for (int i = 0; i < counts[card]; i++) {
+                hand.add(card);
+            }
+        }
+        return hand;
+    }
+}
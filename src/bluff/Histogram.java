@@ -0,0 +1,135 @@
+package bluff;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * Latency histogram in microseconds. Buckets are log-spaced with 16 steps
+ * per power of two, so any reading is within about 6% of the real value,
+ * and the whole range of a long fits in under a thousand counters. Safe
+ * to record into from many threads at once.
+ */
+public class Histogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    //striped, so threads recording at once don't fight over one cache line
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void recordNanos(long nanos) {
+        record(nanos / 1000);
+    }
+
+    /**
+     * @param micros The value to record; negatives count as zero
+     */
+    public void record(long micros) {
+        long v = Math.max(0, micros);
+        counts.incrementAndGet(bucket(v));
+        count.increment();
+        sum.add(v);
+        if (v > max.get()) {
+            max.accumulateAndGet(v, Math::max);
+        }
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * @return Total of everything recorded, in microseconds
+     */
+    public long sum() {
+        return sum.sum();
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    public double mean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * @param p Percentile between 0 and 100
+     * @return The highest value in the bucket holding that percentile, never above the max seen
+     */
+    public long percentile(double p) {
+        long n = count.sum();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(p / 100 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(lowest(i + 1) - 1, max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * How many values were at most each bound, Prometheus style. Taken in
+     * one pass so the counts never go down from one bound to the next; a
+     * value counts under a bound if its whole bucket does.
+     *
+     * @param boundsMicros Upper bounds in ascending order
+     * @return One count per bound, then the total
+     */
+    public long[] cumulative(long... boundsMicros) {
+        long[] out = new long[boundsMicros.length + 1];
+        long seen = 0;
+        int b = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            long highest = lowest(i + 1) - 1;
+            while (b < boundsMicros.length && highest > boundsMicros[b]) {
+                out[b++] = seen;
+            }
+            seen += counts.get(i);
+        }
+        while (b < boundsMicros.length) {
+            out[b++] = seen;
+        }
+        out[boundsMicros.length] = seen;
+        return out;
+    }
+
+    /**
+     * One line with the count, mean, usual percentiles and max, in ms.
+     */
+    public String summary() {
+        return String.format("n=%d mean=%.2fms p50=%.2fms p90=%.2fms p99=%.2fms p99.9=%.2fms max=%.2fms",
+            count(), mean() / 1000, percentile(50) / 1000.0, percentile(90) / 1000.0,
+            percentile(99) / 1000.0, percentile(99.9) / 1000.0, max() / 1000.0);
+    }
+
+    //values under 16 get a bucket each, then 16 buckets per power of two
+    private static int bucket(long v) {
+        if (v < SUB) {
+            return (int) v;
+        }
+        int top = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int) (v >>> (top - SUB_BITS)) & (SUB - 1);
+        return (top - SUB_BITS + 1) * SUB + sub;
+    }
+
+    //smallest value that lands in bucket i
+    private static long lowest(int i) {
+        if (i < SUB) {
+            return i;
+        }
+        if (i >= BUCKETS) {
+            return Long.MAX_VALUE;
+        }
+        int top = i / SUB + SUB_BITS - 1;
+        return (long) (SUB + i % SUB) << (top - SUB_BITS);
+    }
+}
@@ -0,0 +1,201 @@
+package bluff;
+
+import java.nio.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.*;
+import java.util.*;
+
+/**
+ * Just enough HTTP for browsers: one GET per connection for the static
+ * page and its assets, or an upgrade to a WebSocket that carries
+ * {@link Wire} frames. The game port tells these apart from game clients
+ * by their first bytes ("GET ").
+ */
+public class Http {
+    //files are served from here, by default the folder index.html lives in
+    public static final Path WEB_ROOT = Paths.get(System.getProperty("bluff.webRoot", "src")).toAbsolutePath().normalize();
+    public static final byte[] GET = "GET ".getBytes(StandardCharsets.US_ASCII);
+    private static final String WS_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    //WebSocket opcodes
+    public static final int WS_TEXT = 0x1;
+    public static final int WS_BINARY = 0x2;
+    public static final int WS_CLOSE = 0x8;
+    public static final int WS_PING = 0x9;
+    public static final int WS_PONG = 0xA;
+    //headers of every binary message short enough for a one-byte length
+    private static final ByteBuffer[] SHORT_BINARY_HEADERS = new ByteBuffer[126];
+
+    static {
+        for (int length = 0; length < SHORT_BINARY_HEADERS.length; length++) {
+            SHORT_BINARY_HEADERS[length] = ByteBuffer.wrap(wsHeader(WS_BINARY, length)).asReadOnlyBuffer();
+        }
+    }
+
+    /**
+     * The parts of a request head we look at.
+     */
+    public static class Request {
+        public final String path;
+        private final Map<String, String> headers;
+
+        Request(String path, Map<String, String> headers) {
+            this.path = path;
+            this.headers = headers;
+        }
+
+        public String header(String name) {
+            return headers.getOrDefault(name.toLowerCase(Locale.ROOT), "");
+        }
+
+        /**
+         * @return The value of a query parameter, or "" if it is not there
+         */
+        public String query(String name) {
+            int q = path.indexOf('?');
+            if (q < 0) {
+                return "";
+            }
+            for (String pair : path.substring(q + 1).split("&")) {
+                if (pair.startsWith(name + "=")) {
+                    return pair.substring(name.length() + 1);
+                }
+            }
+            return "";
+        }
+
+        public boolean isWebSocket() {
+            return header("upgrade").equalsIgnoreCase("websocket") && !header("sec-websocket-key").isEmpty();
+        }
+    }
+
+    /**
+     * @return Index just past the blank line ending the head, or -1 if it has not all arrived
+     */
+    public static int headEnd(ByteBuffer buf) {
+        for (int i = buf.position(); i + 3 < buf.limit(); i++) {
+            if (buf.get(i) == '\r' && buf.get(i + 1) == '\n' && buf.get(i + 2) == '\r' && buf.get(i + 3) == '\n') {
+                return i + 4;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return The request, or null if the request line isn't "method path
+     *         version" with a path starting at /
+     */
+    public static Request parse(String head) {
+        String[] lines = head.split("\r\n");
+        String[] requestLine = lines[0].split(" ");
+        if (requestLine.length != 3 || !requestLine[1].startsWith("/") || requestLine[2].isEmpty()) {
+            return null;
+        }
+        String path = requestLine[1];
+        Map<String, String> headers = new HashMap<>();
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon > 0) {
+                headers.put(lines[i].substring(0, colon).trim().toLowerCase(Locale.ROOT), lines[i].substring(colon + 1).trim());
+            }
+        }
+        return new Request(path, headers);
+    }
+
+    /**
+     * The 101 response that turns the connection into a WebSocket.
+     */
+    public static byte[] upgrade(Request request) {
+        String accept;
+        try {
+            byte[] sha1 = MessageDigest.getInstance("SHA-1")
+                .digest((request.header("sec-websocket-key") + WS_GUID).getBytes(StandardCharsets.US_ASCII));
+            accept = Base64.getEncoder().encodeToString(sha1);
+        } catch (NoSuchAlgorithmException e) {
+            //every JVM has SHA-1
+            throw new IllegalStateException(e);
+        }
+        return ("HTTP/1.1 101 Switching Protocols\r\n"
+            + "Upgrade: websocket\r\n"
+            + "Connection: Upgrade\r\n"
+            + "Sec-WebSocket-Accept: " + accept + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Maps a request path to a file under {@link #WEB_ROOT}.
+     *
+     * @return The file, or null if it is missing, outside the root or not a web file
+     */
+    public static Path resolve(String path) {
+        int query = path.indexOf('?');
+        if (query >= 0) {
+            path = path.substring(0, query);
+        }
+        if (!path.startsWith("/")) {
+            return null;
+        }
+        if (path.endsWith("/")) {
+            path += "index.html";
+        }
+        Path file;
+        try {
+            file = WEB_ROOT.resolve(path.substring(1)).normalize();
+        } catch (InvalidPathException e) {
+            //e.g. a NUL in the path, no such file either way
+            return null;
+        }
+        if (!file.startsWith(WEB_ROOT) || !Files.isRegularFile(file) || contentType(file) == null) {
+            return null;
+        }
+        return file;
+    }
+
+    public static byte[] responseHead(int status, String reason, String contentType, long length) {
+        return ("HTTP/1.1 " + status + " " + reason + "\r\n"
+            + "Content-Type: " + contentType + "\r\n"
+            + "Content-Length: " + length + "\r\n"
+            + "Connection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    public static String contentType(Path file) {
+        String name = file.getFileName().toString();
+        String ext = name.substring(name.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        return switch (ext) {
+            case "html" -> "text/html; charset=utf-8";
+            case "css" -> "text/css; charset=utf-8";
+            case "js" -> "text/javascript; charset=utf-8";
+            case "png" -> "image/png";
+            case "jpg", "jpeg" -> "image/jpeg";
+            case "svg" -> "image/svg+xml";
+            case "ico" -> "image/x-icon";
+            //nothing else under the root is meant for browsers, e.g. the .java sources
+            default -> null;
+        };
+    }
+
+    /**
+     * {@link #wsHeader} for a binary message. Headers of short messages are
+     * made once and shared, so read one without moving its position.
+     */
+    public static ByteBuffer wsBinaryHeader(int length) {
+        return length < SHORT_BINARY_HEADERS.length
+            ? SHORT_BINARY_HEADERS[length] : ByteBuffer.wrap(wsHeader(WS_BINARY, length));
+    }
+
+    /**
+     * Header for one unfragmented, unmasked server-to-browser message; the
+     * payload follows it as a separate buffer.
+     */
+    public static byte[] wsHeader(int opcode, int length) {
+        if (length < 126) {
+            return new byte[] {(byte) (0x80 | opcode), (byte) length};
+        }
+        if (length <= 0xFFFF) {
+            return new byte[] {(byte) (0x80 | opcode), 126, (byte) (length >>> 8), (byte) length};
+        }
+        ByteBuffer header = ByteBuffer.allocate(10);
+        header.put((byte) (0x80 | opcode)).put((byte) 127).putLong(length);
+        return header.array();
+    }
+}
@@ -0,0 +1,136 @@
+package bluff;
+
+import java.io.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * One selector thread that does all of the reading and writing for the
+ * connections registered with it. The server runs a handful of these
+ * (one per core by default) instead of one thread per player.
+ */
+public class IoLoop implements Runnable {
+    /**
+     * What a registered channel's key carries. The loop calls it, always on
+     * the loop thread, whenever its channel is ready.
+     */
+    public interface Handler {
+        void setKey(SelectionKey key);
+
+        void onReadable();
+
+        //writable, or just registered with something already queued
+        void flush();
+
+        //only for a channel registered while still connecting
+        default void onConnectable() {
+        }
+
+        void close();
+    }
+
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+
+    public IoLoop(int id) throws IOException {
+        selector = Selector.open();
+        thread = new Thread(this, "io-" + id);
+        thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Runs a task on the loop thread, waking the selector if needed.
+     */
+    public void execute(Runnable task) {
+        tasks.add(task);
+        if (Thread.currentThread() != thread) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Runs a task on the loop thread after a delay, timed by the shared
+     * {@link TimerWheel}.
+     */
+    public void schedule(Runnable task, long delayMillis) {
+        Table.TIMER.schedule(() -> execute(task), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void register(SocketChannel channel, Handler handler) {
+        register(channel, SelectionKey.OP_READ, handler);
+    }
+
+    /**
+     * @param ops What to wait for first, OP_CONNECT for a channel still connecting
+     */
+    public void register(SocketChannel channel, int ops, Handler handler) {
+        execute(() -> {
+            try {
+                handler.setKey(channel.register(selector, ops, handler));
+                //anything queued before we registered
+                handler.flush();
+            } catch (ClosedChannelException e) {
+                handler.close();
+            }
+        });
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                if (!tasks.isEmpty()) {
+                    //queued from this thread, e.g. a reply to something just read; nobody will wake us for it
+                    selector.selectNow();
+                } else {
+                    selector.select();
+                }
+            } catch (IOException e) {
+                System.err.println("Selector error: " + e.getMessage());
+                return;
+            }
+
+            //run anything other threads handed us
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    //one bad task must not stop the loop for everyone else on it
+                    System.err.println("I/O task failed: " + e);
+                }
+            }
+
+            Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+            while (it.hasNext()) {
+                SelectionKey key = it.next();
+                it.remove();
+                Handler handler = (Handler) key.attachment();
+                if (!key.isValid()) {
+                    continue;
+                }
+                try {
+                    if (key.isConnectable()) {
+                        handler.onConnectable();
+                    }
+                    if (key.isValid() && key.isReadable()) {
+                        handler.onReadable();
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        handler.flush();
+                    }
+                } catch (RuntimeException e) {
+                    //a bug on one connection only costs that connection
+                    System.err.println("Connection failed, closing it: " + e);
+                    handler.close();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,448 @@
+package bluff;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.*;
+
+/**
+ * Append-only log of everything that changes a game: tables starting,
+ * deals, moves, bluff calls, passes, players dropping out or handing
+ * their seat to a bot, and games ending. Records go straight into a memory-mapped segment file, so an
+ * append is a few stores under a short lock and survives the process
+ * dying; a background thread forces the pages to disk every
+ * -Dbluff.journalFlushMs (default 50) instead of on every record.
+ * Segments roll at -Dbluff.journalSegmentBytes (default 4 MB) and only
+ * the newest -Dbluff.journalSegments (default 16) are kept, plus any
+ * older ones back to the start of a game that is still going.
+ *
+ * {@link #recover(Path)} replays the segments into {@link BluffGame}s
+ * for every table that never finished.
+ *
+ * Record layout: [u16 length][u8 type][i32 table][payload], length
+ * counting everything after itself. A zero length marks the end of a
+ * segment. The length is written last, so a record cut short by a
+ * crash reads as the end.
+ */
+public class Journal implements Closeable {
+    public static final String DIR = System.getProperty("bluff.journal", "journal");
+    private static final int SEGMENT_BYTES = Integer.getInteger("bluff.journalSegmentBytes", 4 << 20);
+    private static final int KEEP_SEGMENTS = Integer.getInteger("bluff.journalSegments", 16);
+    private static final long FLUSH_MS = Long.getLong("bluff.journalFlushMs", 50);
+
+    //record types
+    static final byte START = 1;      //seats, then each seat's 8-byte session token
+    static final byte DEAL = 2;       //round card, turn, then each seat's packed hand
+    static final byte MOVE = 3;       //actual, fake
+    static final byte BLUFF = 4;      //accuser's seat
+    static final byte PASS = 5;       //nobody called bluff
+    static final byte REMOVE = 6;     //seat
+    static final byte END = 7;        //winner's seat, or -1
+    static final byte TAKEOVER = 8;   //seat a bot now plays, its token cleared
+
+    private static final int HEADER = 2 + 1 + 4;
+
+    //for -Dbluff.journal=off, every append is dropped
+    public static final Journal OFF = new Journal();
+
+    private final Path dir;
+    private MappedByteBuffer segment;
+    private int segmentNumber;
+    private boolean dirty = false;
+    //segments rolled away from and not yet forced, left to the flusher
+    private List<MappedByteBuffer> retired = new ArrayList<>();
+    //the segment holding each unfinished game's START, which recovery can't do without
+    private final Map<Integer, Integer> startedIn = new HashMap<>();
+    private boolean closed = false;
+    private final Thread flusher;
+
+    private Journal() {
+        dir = null;
+        flusher = null;
+        closed = true;
+    }
+
+    /**
+     * The journal named by -Dbluff.journal, or {@link #OFF} if it is
+     * turned off or cannot be opened.
+     *
+     * @param unfinished The games recovered from it, whose starts must be kept until they end
+     */
+    public static Journal open(Map<Integer, Unfinished> unfinished) {
+        if (!enabled()) {
+            return OFF;
+        }
+        try {
+            return new Journal(Paths.get(DIR), unfinished);
+        } catch (IOException e) {
+            //the game still works without it
+            System.err.println("Journal not opened: " + e.getMessage());
+            return OFF;
+        }
+    }
+
+    public static boolean enabled() {
+        return !DIR.isEmpty() && !DIR.equals("off");
+    }
+
+    /**
+     * Opens a new segment after any already in the directory; old ones
+     * are only read by {@link #recover}.
+     */
+    public Journal(Path dir) throws IOException {
+        this(dir, Map.of());
+    }
+
+    /**
+     * Like {@link #Journal(Path)}, keeping the segments these recovered
+     * games started in until they end.
+     */
+    public Journal(Path dir, Map<Integer, Unfinished> unfinished) throws IOException {
+        this.dir = dir;
+        unfinished.forEach((table, game) -> startedIn.put(table, game.segment));
+        Files.createDirectories(dir);
+        List<Path> existing = segments(dir);
+        segmentNumber = existing.isEmpty() ? 0 : number(existing.get(existing.size() - 1));
+        roll();
+
+        flusher = new Thread(this::flushLoop, "journal-flush");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    // ----- writing, called by the tables -----
+
+    public synchronized void tableStarted(int table, long[] tokens) {
+        if (!reserve(HEADER + 1 + tokens.length * 8)) {
+            return;
+        }
+        int start = segment.position();
+        segment.position(start + 2);
+        segment.put(START).putInt(table).put((byte) tokens.length);
+        for (long token : tokens) {
+            segment.putLong(token);
+        }
+        finish(start);
+        startedIn.put(table, segmentNumber);
+    }
+
+    public synchronized void dealt(int table, BluffGame game) {
+        int seats = game.seats();
+        if (!reserve(HEADER + 2 + seats * 4)) {
+            return;
+        }
+        int start = segment.position();
+        segment.position(start + 2);
+        segment.put(DEAL).putInt(table).put((byte) game.roundCard()).put((byte) game.turn());
+        for (int seat = 0; seat < seats; seat++) {
+            segment.putInt(game.hand(seat).packed());
+        }
+        finish(start);
+    }
+
+    public void moved(int table, int actual, int fake) {
+        append(MOVE, table, actual, fake, 2);
+    }
+
+    public void bluffCalled(int table, int accuser) {
+        append(BLUFF, table, accuser, 0, 1);
+    }
+
+    public void passed(int table) {
+        append(PASS, table, 0, 0, 0);
+    }
+
+    public void removed(int table, int seat) {
+        append(REMOVE, table, seat, 0, 1);
+    }
+
+    /**
+     * A bot took over a seat, so after a restart it comes straight back
+     * instead of the seat waiting for the player who left.
+     */
+    public void takenOver(int table, int seat) {
+        append(TAKEOVER, table, seat, 0, 1);
+    }
+
+    public synchronized void ended(int table, int winner) {
+        append(END, table, winner, 0, 1);
+        //nothing needs its start any more
+        startedIn.remove(table);
+    }
+
+    //a record with up to two one-byte fields
+    private synchronized void append(byte type, int table, int a, int b, int fields) {
+        if (!reserve(HEADER + fields)) {
+            return;
+        }
+        int start = segment.position();
+        segment.position(start + 2);
+        segment.put(type).putInt(table);
+        if (fields > 0) {
+            segment.put((byte) a);
+        }
+        if (fields > 1) {
+            segment.put((byte) b);
+        }
+        finish(start);
+    }
+
+    //makes room for a record, rolling to a new segment if this one is full
+    private boolean reserve(int size) {
+        if (closed) {
+            return false;
+        }
+        //always leave two zero bytes at the end so a reader knows where to stop
+        if (segment.remaining() >= size + 2) {
+            return true;
+        }
+        try {
+            roll();
+            return true;
+        } catch (IOException e) {
+            System.err.println("Journal: cannot open a new segment, journaling stopped: " + e.getMessage());
+            closed = true;
+            return false;
+        }
+    }
+
+    private void finish(int start) {
+        //length last, so a half-written record reads as the end of the segment
+        segment.putShort(start, (short) (segment.position() - start - 2));
+        dirty = true;
+    }
+
+    private void roll() throws IOException {
+        if (segment != null) {
+            //forced by the flusher, not under the lock every table appends under
+            retired.add(segment);
+            dirty = true;
+        }
+        segmentNumber++;
+        Path file = dir.resolve(String.format("segment-%08d.journal", segmentNumber));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_BYTES);
+        }
+
+        //drop the oldest segments past the limit, unless a game still going started in them or after them
+        int oldestStart = startedIn.isEmpty() ? segmentNumber : Collections.min(startedIn.values());
+        List<Path> all = segments(dir);
+        for (int i = 0; i < all.size() - KEEP_SEGMENTS && number(all.get(i)) < oldestStart; i++) {
+            Files.deleteIfExists(all.get(i));
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            try {
+                Thread.sleep(FLUSH_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            MappedByteBuffer toForce;
+            List<MappedByteBuffer> rolled = null;
+            synchronized (this) {
+                if (!dirty || closed) {
+                    continue;
+                }
+                dirty = false;
+                toForce = segment;
+                if (!retired.isEmpty()) {
+                    rolled = retired;
+                    retired = new ArrayList<>();
+                }
+            }
+            //outside the lock, tables keep appending while the pages go to disk
+            if (rolled != null) {
+                rolled.forEach(MappedByteBuffer::force);
+            }
+            toForce.force();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        flusher.interrupt();
+        retired.forEach(MappedByteBuffer::force);
+        segment.force();
+    }
+
+    // ----- reading -----
+
+    /**
+     * A game the last run never finished, and who was sitting at it.
+     */
+    public static class Unfinished {
+        public final BluffGame game;
+        //session tokens by seat, so the players can resume
+        public final long[] tokens;
+        //the number of the segment its START is in
+        final int segment;
+
+        Unfinished(BluffGame game, long[] tokens, int segment) {
+            this.game = game;
+            this.tokens = tokens;
+            this.segment = segment;
+        }
+    }
+
+    /**
+     * What a journal directory says about the last run.
+     */
+    public static class Recovery {
+        //tables whose game never ended, by table ID
+        public final Map<Integer, Unfinished> unfinished = new TreeMap<>();
+        public int lastTableID = 0;
+        public long records = 0;
+    }
+
+    /**
+     * Replays every segment in the directory, oldest first.
+     */
+    public static Recovery recover(Path dir) throws IOException {
+        Recovery recovery = new Recovery();
+        if (!Files.isDirectory(dir)) {
+            return recovery;
+        }
+        for (Path file : segments(dir)) {
+            ByteBuffer buf;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            while (buf.remaining() >= 2) {
+                int len = buf.getShort() & 0xFFFF;
+                if (len == 0 || len > buf.remaining()) {
+                    break;
+                }
+                int next = buf.position() + len;
+                replay(recovery, number(file), buf.get(), buf.getInt(), buf);
+                buf.position(next);
+                recovery.records++;
+            }
+        }
+        return recovery;
+    }
+
+    private static void replay(Recovery recovery, int segment, byte type, int table, ByteBuffer p) {
+        recovery.lastTableID = Math.max(recovery.lastTableID, table);
+        if (type == START) {
+            long[] tokens = new long[p.get()];
+            for (int seat = 0; seat < tokens.length; seat++) {
+                tokens[seat] = p.getLong();
+            }
+            BluffGame game = BluffGame.withSeats(tokens.length, new SplittableRandom());
+            recovery.unfinished.put(table, new Unfinished(game, tokens, segment));
+            return;
+        }
+        Unfinished unfinished = recovery.unfinished.get(table);
+        if (unfinished == null) {
+            //its start is in a segment we no longer keep
+            return;
+        }
+        BluffGame game = unfinished.game;
+        switch (type) {
+            case DEAL -> {
+                int roundCard = p.get();
+                int turn = p.get();
+                int[] hands = new int[game.seats()];
+                for (int seat = 0; seat < hands.length; seat++) {
+                    hands[seat] = p.getInt();
+                }
+                game.restoreRound(roundCard, turn, hands);
+            }
+            case MOVE -> game.play(p.get(), p.get());
+            case BLUFF -> game.callBluff(p.get());
+            case PASS -> game.endTurn();
+            case REMOVE -> game.remove(p.get());
+            case TAKEOVER -> unfinished.tokens[p.get()] = 0;
+            case END -> recovery.unfinished.remove(table);
+            default -> { }
+        }
+    }
+
+    private static List<Path> segments(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(f -> f.getFileName().toString().matches("segment-\\d{8}\\.journal"))
+                .sorted()
+                .collect(Collectors.toList());
+        }
+    }
+
+    private static int number(Path segment) {
+        String name = segment.getFileName().toString();
+        return Integer.parseInt(name.substring("segment-".length(), name.length() - ".journal".length()));
+    }
+
+    /**
+     * Simple test of the Journal class: writes games to a scratch directory
+     * and checks that recovery brings back exactly the one that never
+     * ended, as it was, even once more segments than are kept have been
+     * written after its start.
+     */
+    public static void main(String[] args) throws IOException {
+        Path dir = Files.createTempDirectory("bluff-journal");
+        Journal journal = new Journal(dir);
+
+        //table 1 is dealt and one move is made, then the server "dies"
+        BluffGame game = BluffGame.withSeats(2, new SplittableRandom(1));
+        journal.tableStarted(1, new long[] {11, 22});
+        int roundCard = game.startRound();
+        journal.dealt(1, game);
+        int actual = game.hand(game.turn()).count(roundCard) > 0 ? 1 : 0;
+        game.play(actual, 1 - actual);
+        journal.moved(1, actual, 1 - actual);
+        journal.takenOver(1, 1);
+        //table 2 finished, so it stays finished
+        journal.tableStarted(2, new long[] {33, 44});
+        journal.ended(2, 0);
+        int started = journal.segmentNumber;
+        while (journal.segmentNumber <= started + KEEP_SEGMENTS) {
+            journal.passed(3);
+        }
+        journal.close();
+
+        Recovery recovery = recover(dir);
+        check(recovery.unfinished.keySet().equals(Set.of(1)), "only the unfinished game comes back");
+        check(recovery.lastTableID == 3, "table numbers carry on after the last one written");
+        Unfinished back = recovery.unfinished.get(1);
+        check(Arrays.equals(back.tokens, new long[] {11, 0}), "its players' tokens come back, none for a bot's seat");
+        check(back.game.roundCard() == roundCard && back.game.turn() == game.turn()
+            && back.game.lastSeat() == game.lastSeat() && back.game.lastPlayed() == game.lastPlayed(),
+            "the round and its last move come back");
+        for (int seat = 0; seat < 2; seat++) {
+            check(back.game.hand(seat).packed() == game.hand(seat).packed(), "seat " + seat + "'s hand comes back");
+        }
+
+        //a restart keeps its start too, until it ends
+        journal = new Journal(dir, recovery.unfinished);
+        check(recover(dir).unfinished.containsKey(1), "a restart keeps the segment it started in");
+        journal.ended(1, 0);
+        started = journal.segmentNumber;
+        while (journal.segmentNumber == started) {
+            journal.passed(3);
+        }
+        journal.close();
+        check(segments(dir).size() == KEEP_SEGMENTS, "once it ends, only the newest segments are kept");
+        check(recover(dir).unfinished.isEmpty(), "nothing is left unfinished");
+
+        for (Path file : segments(dir)) {
+            Files.delete(file);
+        }
+        Files.delete(dir);
+        System.out.println("Journal checks passed");
+    }
+
+    private static void check(boolean ok, String what) {
+        if (!ok) {
+            throw new IllegalStateException("Journal check failed: " + what);
+        }
+        System.out.println("ok: " + what);
+    }
+}
@@ -0,0 +1,225 @@
+package bluff;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Headless players for load testing a running server. Each one speaks the
+ * binary protocol, plays random moves its hand can cover, calls BLUFF on
+ * other players at a set rate and joins a new game when its last one ends,
+ * until the time is up. Then it prints latency histograms for
+ * move-to-broadcast (our MOVE sent until the table tells everyone about
+ * it) and BLUFF-to-resolution (our BLUFF sent until the result arrives).
+ *
+ * The server's bluff window (-Dbluff.windowMs) sets how long every turn
+ * without a bluff call takes, so keep it short when measuring throughput.
+ *
+ * Usage: java bluff.BluffClient --load <server_ip> <port> <players> [seconds] [bluffRate]
+ */
+public class LoadGenerator {
+    private final String host;
+    private final int port;
+    private final double bluffRate;
+
+    final Histogram moveToBroadcast = new Histogram();
+    final Histogram bluffToResolution = new Histogram();
+    final LongAdder games = new LongAdder();
+    final LongAdder moves = new LongAdder();
+    final LongAdder bluffsCalled = new LongAdder();
+    final LongAdder bluffsLate = new LongAdder();
+    final LongAdder rejected = new LongAdder();
+    final LongAdder resyncs = new LongAdder();
+    final LongAdder errors = new LongAdder();
+
+    private final Set<Socket> open = ConcurrentHashMap.newKeySet();
+    private volatile boolean running = true;
+
+    public LoadGenerator(String host, int port, double bluffRate) {
+        this.host = host;
+        this.port = port;
+        this.bluffRate = bluffRate;
+    }
+
+    /**
+     * Runs {@code players} bots for {@code seconds}, then cuts every
+     * connection and returns.
+     */
+    public void run(int players, long seconds) throws InterruptedException {
+        ExecutorService bots = BluffServer.newThreadPerTaskExecutor("load");
+        for (int i = 0; i < players; i++) {
+            long seed = i;
+            bots.execute(() -> keepPlaying(new SplittableRandom(seed)));
+        }
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+
+        running = false;
+        for (Socket s : open) {
+            try {
+                s.close();
+            } catch (IOException e) {
+                //already gone
+            }
+        }
+        bots.shutdown();
+        bots.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private void keepPlaying(SplittableRandom rng) {
+        while (running) {
+            try (Socket sock = new Socket(host, port)) {
+                open.add(sock);
+                sock.setTcpNoDelay(true);
+                new Bot(sock.getOutputStream(), rng).play(sock.getInputStream());
+                open.remove(sock);
+            } catch (IOException e) {
+                if (running) {
+                    errors.increment();
+                    //don't spin if the server is down
+                    sleepQuietly(100);
+                }
+            }
+        }
+    }
+
+    /**
+     * One player for one game.
+     */
+    private class Bot implements Wire.FrameListener {
+        private final OutputStream out;
+        private final SplittableRandom rng;
+        private final HandSync hand = new HandSync();
+        private int playerID;
+        private int lastMover;
+        //our turn came while the whole hand was being resent, move once it arrives
+        private int turnRoundCard = -1;
+        private long moveSentAt;
+        private long bluffSentAt;
+
+        Bot(OutputStream out, SplittableRandom rng) {
+            this.out = out;
+            this.rng = rng;
+        }
+
+        void play(InputStream in) throws IOException {
+            out.write(Wire.MAGIC);
+            out.flush();
+            Wire.readAll(in, this);
+        }
+
+        @Override
+        public void onFrame(byte opcode, byte[] p) {
+            try {
+                switch (opcode) {
+                    case Wire.TEXT -> onText(Wire.describe(opcode, p));
+                    case Wire.YOUR_TURN -> {
+                        //the hand is already current, so move straight away, unless it is being resent
+                        if (hand.isWaiting()) {
+                            turnRoundCard = p[0];
+                        } else {
+                            move(p[0]);
+                        }
+                    }
+                    case Wire.HAND, Wire.HAND_DELTA -> {
+                        if (!hand.apply(opcode, p)) {
+                            resyncs.increment();
+                            send(Wire.resync());
+                        } else if (turnRoundCard >= 0 && !hand.isWaiting()) {
+                            move(turnRoundCard);
+                            turnRoundCard = -1;
+                        }
+                    }
+                    case Wire.MOVE -> {
+                        lastMover = p[0];
+                        if (p[0] == playerID && moveSentAt != 0) {
+                            moveToBroadcast.recordNanos(System.nanoTime() - moveSentAt);
+                            moveSentAt = 0;
+                        }
+                    }
+                    case Wire.BLUFF -> {
+                        if (bluffSentAt != 0) {
+                            bluffToResolution.recordNanos(System.nanoTime() - bluffSentAt);
+                            bluffSentAt = 0;
+                        }
+                    }
+                    case Wire.PING -> send(Wire.pong());
+                    default -> { }
+                }
+            } catch (IOException e) {
+                //the read side will see the socket go
+            }
+        }
+
+        private void onText(String text) throws IOException {
+            if (text.startsWith("You are Player ")) {
+                playerID = Integer.parseInt(text.substring("You are Player ".length()).trim());
+            } else if (text.startsWith("Anyone can type") && lastMover != playerID && rng.nextDouble() < bluffRate) {
+                bluffsCalled.increment();
+                bluffSentAt = System.nanoTime();
+                send(Wire.bluff());
+            } else if (text.startsWith("No one called bluff") && bluffSentAt != 0) {
+                //the window shut before our call got there
+                bluffsLate.increment();
+                bluffSentAt = 0;
+            } else if (text.startsWith("Invalid")) {
+                rejected.increment();
+            } else if (text.equals("Game Over! Winner: Player " + playerID)) {
+                //only the winner counts it, or every game would count once per survivor
+                games.increment();
+            }
+        }
+
+        //some number of cards the hand can actually cover, true or not
+        private void move(int roundCard) throws IOException {
+            int size = hand.size();
+            int others = size - hand.count(roundCard);
+            int total = 1 + rng.nextInt(Math.min(3, size));
+            int fake = rng.nextInt(Math.min(others, total) + 1);
+            int actual = Math.min(total - fake, hand.count(roundCard));
+            if (actual + fake == 0) {
+                fake = 1;
+            }
+
+            moves.increment();
+            moveSentAt = System.nanoTime();
+            send(Wire.move(actual, fake));
+        }
+
+        private void send(byte[] frame) throws IOException {
+            out.write(frame);
+            out.flush();
+        }
+    }
+
+    private static void sleepQuietly(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.out.println("Usage: java bluff.BluffClient --load <server_ip> <port> <players> [seconds] [bluffRate]");
+            return;
+        }
+        String host = args[0];
+        int port = Integer.parseInt(args[1]);
+        int players = Integer.parseInt(args[2]);
+        long seconds = args.length > 3 ? Long.parseLong(args[3]) : 30;
+        double bluffRate = args.length > 4 ? Double.parseDouble(args[4]) : 0.1;
+
+        LoadGenerator load = new LoadGenerator(host, port, bluffRate);
+        System.out.printf("%d players against %s:%d for %ds, bluff rate %.2f%n", players, host, port, seconds, bluffRate);
+        load.run(players, seconds);
+
+        System.out.printf("%d games finished, %.0f moves/sec, %d bluffs called (%d too late), %d moves rejected, %d resyncs, %d connect errors%n",
+            load.games.sum(), load.moves.sum() / (double) seconds, load.bluffsCalled.sum(),
+            load.bluffsLate.sum(), load.rejected.sum(), load.resyncs.sum(), load.errors.sum());
+        System.out.println("move -> broadcast:   " + load.moveToBroadcast.summary());
+        System.out.println("BLUFF -> resolution: " + load.bluffToResolution.summary());
+    }
+}
@@ -0,0 +1,119 @@
+package bluff;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+/**
+ * Players waiting for a table. Nobody takes a lock here: players go onto
+ * a lock-free deque, and whoever brings the count up to a full table
+ * claims that many with one compare-and-set and hands them on. Tables
+ * keep forming as long as enough players are waiting, however many
+ * threads are joining at once.
+ */
+public class Lobby {
+    private final int tableSize;
+    private final Consumer<List<ClientHandler>> startTable;
+    private final ConcurrentLinkedDeque<ClientHandler> waiting = new ConcurrentLinkedDeque<>();
+    //entries on the deque nobody has claimed yet, counting players who left but were not skipped yet
+    private final AtomicInteger unclaimed = new AtomicInteger();
+
+    /**
+     * @param tableSize Players per table
+     * @param startTable Called with each full table's players, on whichever thread filled it
+     */
+    public Lobby(int tableSize, Consumer<List<ClientHandler>> startTable) {
+        this.tableSize = tableSize;
+        this.startTable = startTable;
+    }
+
+    public void join(ClientHandler player) {
+        player.lobbySince = System.nanoTime();
+        player.inLobby.set(true);
+        Metrics.LOBBY_PLAYERS.increment();
+        waiting.offerLast(player);
+        //counted after it's on the deque, so a claim never finds fewer entries than it counted
+        if (unclaimed.incrementAndGet() >= tableSize) {
+            formTables();
+        }
+    }
+
+    /**
+     * A waiting player disconnected or resumed a seat elsewhere. They stay
+     * on the deque and get skipped by whoever claims them.
+     *
+     * @return False if they were no longer waiting, e.g. a table just claimed them
+     */
+    public boolean leave(ClientHandler player) {
+        if (player.inLobby.compareAndSet(true, false)) {
+            Metrics.LOBBY_PLAYERS.decrement();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Tops the next table up with bots if the first person waiting for it
+     * has waited at least {@code patienceNanos}, so a quiet server still
+     * gets games going.
+     *
+     * @param newBot Makes one bot player
+     */
+    public void fillWithBots(long patienceNanos, Supplier<ClientHandler> newBot) {
+        while (true) {
+            ClientHandler first = null;
+            int here = 0;
+            for (ClientHandler player : waiting) {
+                if (player.inLobby.get()) {
+                    here++;
+                    if (first == null && player.getBot() == null) {
+                        first = player;
+                    }
+                }
+            }
+            if (first == null || here >= tableSize || System.nanoTime() - first.lobbySince < patienceNanos) {
+                return;
+            }
+            //each one may be the one that fills the table
+            join(newBot.get());
+        }
+    }
+
+    private void formTables() {
+        int n;
+        while ((n = unclaimed.get()) >= tableSize) {
+            if (!unclaimed.compareAndSet(n, n - tableSize)) {
+                continue;
+            }
+
+            //these entries are ours now, keep the ones who are still here
+            List<ClientHandler> players = new ArrayList<>(tableSize);
+            for (int i = 0; i < tableSize; i++) {
+                ClientHandler player = waiting.pollFirst();
+                if (player != null && player.inLobby.compareAndSet(true, false)) {
+                    players.add(player);
+                }
+            }
+
+            if (players.size() < tableSize) {
+                //someone left, put the rest back at the front so they keep their place;
+                //one who leaves right now just turns up at a table as a disconnect
+                for (int i = players.size() - 1; i >= 0; i--) {
+                    players.get(i).inLobby.set(true);
+                    waiting.offerFirst(players.get(i));
+                }
+                unclaimed.addAndGet(players.size());
+                continue;
+            }
+
+            long now = System.nanoTime();
+            for (ClientHandler player : players) {
+                Metrics.LOBBY_WAIT.recordNanos(now - player.lobbySince);
+            }
+            Metrics.LOBBY_PLAYERS.add(-tableSize);
+            Metrics.TABLES_FORMED.increment();
+            startTable.accept(players);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package bluff;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Server-wide counters and latency histograms, served in Prometheus text
+ * format on http://127.0.0.1:12346/metrics (-Dbluff.metricsPort, 0 turns
+ * it off). Everything here is a LongAdder or a {@link Histogram}, so the
+ * tables and I/O threads can update it on every message without
+ * contending; the cost of adding things up is paid by the scrape.
+ */
+public final class Metrics {
+    public static final int PORT = Integer.getInteger("bluff.metricsPort", 12346);
+
+    //from a player's turn starting until the bluff window after it closes
+    public static final Histogram TURN = new Histogram();
+    //how long each bluff window stays open, until a call or the timer closes it
+    public static final Histogram BLUFF_WINDOW = new Histogram();
+    //time to queue one message for everyone at a table
+    public static final Histogram BROADCAST = new Histogram();
+    //from joining the lobby to being given a table
+    public static final Histogram LOBBY_WAIT = new Histogram();
+    //time to queue one public event for everyone watching a table
+    public static final Histogram SPECTATOR_FANOUT = new Histogram();
+    //from a bot starting to think until it decides
+    public static final Histogram BOT_THINK = new Histogram();
+
+    public static final LongAdder BLUFF_CALLS = new LongAdder();
+    public static final LongAdder BLUFFS_CAUGHT = new LongAdder();
+    public static final LongAdder TABLES = new LongAdder();
+    public static final LongAdder TABLES_FORMED = new LongAdder();
+    public static final LongAdder LOBBY_PLAYERS = new LongAdder();
+    public static final LongAdder CONNECTIONS = new LongAdder();
+    public static final LongAdder SPECTATORS = new LongAdder();
+    //bytes sitting in every outbox, waiting for the socket
+    public static final LongAdder OUTBOX_BYTES = new LongAdder();
+    public static final LongAdder POOLED_CHUNKS = new LongAdder();
+    public static final LongAdder SLOW_CONSUMERS = new LongAdder();
+    public static final LongAdder RECONNECTS = new LongAdder();
+    public static final LongAdder RESYNCS = new LongAdder();
+    //games played out to the end by bots weighing up their options
+    public static final LongAdder BOT_PLAYOUTS = new LongAdder();
+    //seated players whose connection dropped, still inside their grace window
+    public static final LongAdder AWAY_PLAYERS = new LongAdder();
+    //armed on the timer wheel and neither fired nor cancelled yet
+    public static final LongAdder TIMEOUTS = new LongAdder();
+    public static final LongAdder TURN_TIMEOUTS = new LongAdder();
+    public static final LongAdder IDLE_DISCONNECTS = new LongAdder();
+
+    //histogram buckets, 100us to 10s
+    private static final long[] BOUNDS_MICROS = {
+        100, 250, 500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000,
+        100_000, 250_000, 500_000, 1_000_000, 2_500_000, 5_000_000, 10_000_000
+    };
+
+    private Metrics() {
+    }
+
+    /**
+     * Starts the /metrics endpoint on the loopback address, unless the
+     * port is 0. Scrapes are answered on the HTTP server's own thread.
+     */
+    public static void start() {
+        if (PORT == 0) {
+            return;
+        }
+        try {
+            HttpServer http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), PORT), 0);
+            http.createContext("/metrics", exchange -> {
+                byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            http.start();
+            System.out.println("Metrics: http://127.0.0.1:" + PORT + "/metrics");
+        } catch (IOException e) {
+            //the game still works without them
+            System.err.println("Metrics endpoint not started: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Everything, in Prometheus text exposition format.
+     */
+    public static String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        histogram(out, "bluff_turn_seconds", "Time from a turn starting until its bluff window closes", TURN);
+        histogram(out, "bluff_bluff_window_seconds", "Time a table waits for a BLUFF call after each move", BLUFF_WINDOW);
+        histogram(out, "bluff_broadcast_seconds", "Time to queue one message for every player at a table", BROADCAST);
+        histogram(out, "bluff_lobby_wait_seconds", "Time a player waits in the lobby for a table", LOBBY_WAIT);
+        histogram(out, "bluff_spectator_fanout_seconds", "Time to queue one public event for everyone watching a table", SPECTATOR_FANOUT);
+        histogram(out, "bluff_bot_think_seconds", "Time a bot takes to decide a move or a BLUFF call", BOT_THINK);
+        counter(out, "bluff_tables_formed_total", "Tables the lobby has filled", TABLES_FORMED.sum());
+        counter(out, "bluff_bluff_calls_total", "BLUFF calls that were resolved", BLUFF_CALLS.sum());
+        counter(out, "bluff_bluffs_caught_total", "BLUFF calls that caught a liar", BLUFFS_CAUGHT.sum());
+        counter(out, "bluff_slow_consumers_total", "Messages that found a client's outbox full", SLOW_CONSUMERS.sum());
+        counter(out, "bluff_reconnects_total", "Dropped players who resumed their seat", RECONNECTS.sum());
+        counter(out, "bluff_resyncs_total", "Whole hands re-sent to clients that missed a hand version", RESYNCS.sum());
+        counter(out, "bluff_bot_playouts_total", "Games bots played out to weigh up a decision", BOT_PLAYOUTS.sum());
+        counter(out, "bluff_turn_timeouts_total", "Players who ran out of time for a move", TURN_TIMEOUTS.sum());
+        counter(out, "bluff_idle_disconnects_total", "Connections closed for not answering heartbeats", IDLE_DISCONNECTS.sum());
+        gauge(out, "bluff_away_players", "Seated players waiting to reconnect", AWAY_PLAYERS.sum());
+        gauge(out, "bluff_active_tables", "Tables with a game in progress", TABLES.sum());
+        gauge(out, "bluff_lobby_players", "Players waiting for a table", LOBBY_PLAYERS.sum());
+        gauge(out, "bluff_active_connections", "Open player connections", CONNECTIONS.sum());
+        gauge(out, "bluff_spectators", "Connections watching a table", SPECTATORS.sum());
+        gauge(out, "bluff_timeouts_pending", "Timeouts armed on the timer wheel", TIMEOUTS.sum());
+        gauge(out, "bluff_outbox_bytes", "Bytes queued for clients and not yet written", OUTBOX_BYTES.sum());
+        gauge(out, "bluff_send_chunks", "Pooled send buffers allocated, in use or free", POOLED_CHUNKS.sum());
+        return out.toString();
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        header(out, name, help, "counter");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, long value) {
+        header(out, name, help, "gauge");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void histogram(StringBuilder out, String name, String help, Histogram h) {
+        header(out, name, help, "histogram");
+        long[] counts = h.cumulative(BOUNDS_MICROS);
+        for (int i = 0; i < BOUNDS_MICROS.length; i++) {
+            out.append(name).append("_bucket{le=\"").append(seconds(BOUNDS_MICROS[i])).append("\"} ")
+                .append(counts[i]).append('\n');
+        }
+        long total = counts[BOUNDS_MICROS.length];
+        out.append(name).append("_bucket{le=\"+Inf\"} ").append(total).append('\n');
+        out.append(name).append("_sum ").append(seconds(h.sum())).append('\n');
+        out.append(name).append("_count ").append(total).append('\n');
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String seconds(long micros) {
+        return Double.toString(micros / 1e6);
+    }
+}
@@ -0,0 +1,307 @@
+package bluff;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * A bot that thinks ahead. For each decision it guesses the cards it
+ * cannot see many times over, every guess consistent with its own hand
+ * and everyone's hand size, plays each option out to the end of the game
+ * on every guess, and picks the option that won most often
+ * (information-set Monte Carlo).
+ *
+ * The playouts run on a pool of bot threads shared by every bot in the
+ * process, and stop at a wall-clock deadline. They run in short slices,
+ * each going to the back of the pool's queue when it is done, so bots
+ * thinking at the same time (every bot at a table judging one move, say)
+ * take turns on the threads. A decision never takes much longer than its
+ * budget, however many bots are thinking at once; a busy pool just means
+ * fewer playouts each. If none finished in time the bot falls back to
+ * {@link CountingStrategy}. Because the budget is wall time, the same
+ * seed does not give the same decisions.
+ */
+public class MonteCarloStrategy implements Strategy {
+    //-Dbluff.botThinkMs: time a bot gets for each decision
+    public static final long THINK_MS = Long.getLong("bluff.botThinkMs", 200);
+    //threads shared by every bot, one per core unless told otherwise
+    private static final int THREADS = Math.max(1, Integer.getInteger("bluff.botThreads", Runtime.getRuntime().availableProcessors()));
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(THREADS, r -> {
+        Thread t = new Thread(r, "bluff-bot");
+        t.setDaemon(true);
+        return t;
+    });
+    //a playout this long means the bots in it are stuck passing
+    private static final int MAX_TURNS = 1_000;
+    //how long a worker plays before letting other searches have its thread
+    private static final long SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    //the most cards a bot considers putting down at once
+    private static final int MAX_PLAY = 3;
+    //the options when someone else just moved
+    private static final int PASS = 0;
+    private static final int CALL = 1;
+    private static final int[] BLUFF_OPTIONS = {PASS, CALL};
+    //a claim at least this likely to be a lie is called without a search
+    private static final double SURE_LIE = 0.95;
+
+    private final long budgetNanos;
+    //how everyone is assumed to play once a playout is under way
+    private final Strategy rollout;
+    private final Strategy fallback = new CountingStrategy();
+
+    /**
+     * A bot with {@link #THINK_MS} per decision.
+     */
+    public MonteCarloStrategy() {
+        this(THINK_MS);
+    }
+
+    /**
+     * @param budgetMillis Time each decision may take
+     */
+    public MonteCarloStrategy(long budgetMillis) {
+        //honest play beats random play as a model of the other seats
+        this(budgetMillis, new CountingStrategy());
+    }
+
+    /**
+     * @param budgetMillis Time each decision may take
+     * @param rollout How every seat plays inside a playout
+     */
+    public MonteCarloStrategy(long budgetMillis, Strategy rollout) {
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, budgetMillis));
+        this.rollout = rollout;
+    }
+
+    @Override
+    public int chooseMove(BluffGame game, int seat) {
+        return chooseMoveLater(game, seat).join();
+    }
+
+    @Override
+    public CompletableFuture<Integer> chooseMoveLater(BluffGame game, int seat) {
+        int[] moves = moves(game, seat);
+        if (moves.length < 2) {
+            return CompletableFuture.completedFuture(moves.length == 1 ? moves[0] : fallback.chooseMove(game, seat));
+        }
+        return search(game, seat, moves, false).thenApply(best -> best >= 0 ? moves[best] : fallback.chooseMove(game, seat));
+    }
+
+    @Override
+    public boolean callBluff(BluffGame game, int seat) {
+        return callBluffLater(game, seat).join();
+    }
+
+    @Override
+    public CompletableFuture<Boolean> callBluffLater(BluffGame game, int seat) {
+        if (game.lastSeat() == BluffGame.NO_ONE || game.lastSeat() == seat) {
+            return CompletableFuture.completedFuture(false);
+        }
+        if (BluffOracle.lieChance(game, seat) >= SURE_LIE) {
+            //the mover almost certainly couldn't cover the claim, nothing to think about
+            return CompletableFuture.completedFuture(true);
+        }
+        return search(game, seat, BLUFF_OPTIONS, true).thenApply(best -> best >= 0 ? best == CALL : fallback.callBluff(game, seat));
+    }
+
+    //every move of one to three cards the hand can cover, honest ones first so they win ties
+    private static int[] moves(BluffGame game, int seat) {
+        Hand hand = game.hand(seat);
+        int real = hand.count(game.roundCard());
+        int other = hand.size() - real;
+        int[] moves = new int[MAX_PLAY * (MAX_PLAY + 3) / 2];
+        int n = 0;
+        for (int fake = 0; fake <= MAX_PLAY; fake++) {
+            for (int total = Math.max(1, fake); total <= Math.min(MAX_PLAY, hand.size()); total++) {
+                int actual = total - fake;
+                if (actual <= real && fake <= other) {
+                    moves[n++] = Strategy.move(actual, fake);
+                }
+            }
+        }
+        return Arrays.copyOf(moves, n);
+    }
+
+    //queues a worker for every bot thread; completes with the option that won most, or -1 if none finished
+    private CompletableFuture<Integer> search(BluffGame game, int seat, int[] options, boolean bluff) {
+        Search search = new Search(game, seat, options, bluff, System.nanoTime() + budgetNanos);
+        for (int i = 0; i < THREADS; i++) {
+            POOL.execute(search.new Worker(Cards.seed(search.seed, i)));
+        }
+        //whatever has finished by the deadline is all there is
+        Table.TIMER.schedule(search::finish, budgetNanos, TimeUnit.NANOSECONDS);
+        return search.result;
+    }
+
+    /**
+     * One decision being thought about. Every worker plays on guesses of
+     * its own, a slice at a time, and adds its wins in after each slice.
+     */
+    private class Search {
+        final BluffGame view;
+        final int seat;
+        final int[] options;
+        final boolean bluff;
+        final long started = System.nanoTime();
+        final long deadline;
+        final long seed;
+        final AtomicLongArray wins;
+        final AtomicLong playouts = new AtomicLong();
+        final AtomicInteger running = new AtomicInteger(THREADS);
+        final CompletableFuture<Integer> result = new CompletableFuture<>();
+
+        Search(BluffGame game, int seat, int[] options, boolean bluff, long deadline) {
+            //a copy, so the caller can carry on with the real game as soon as we have it
+            this.seed = game.random().nextLong();
+            this.view = BluffGame.withSeats(game.seats(), new SplittableRandom(seed));
+            view.copyFrom(game);
+            this.seat = seat;
+            this.options = options;
+            this.bluff = bluff;
+            this.deadline = deadline;
+            this.wins = new AtomicLongArray(options.length);
+        }
+
+        /**
+         * One thread's share of the search, with the scratch games it keeps
+         * from one slice to the next.
+         */
+        private class Worker implements Runnable {
+            final SplittableRandom rng;
+            final BluffGame guess;
+            final BluffGame play;
+            final Strategy[] everyone = new Strategy[view.seats()];
+            final Simulation.Stats stats = new Simulation.Stats(view.seats());
+            final int[] unseen = new int[Cards.NUM_TYPES];
+            final long[] won = new long[options.length];
+
+            Worker(long seed) {
+                rng = new SplittableRandom(seed);
+                guess = BluffGame.withSeats(view.seats(), rng);
+                play = BluffGame.withSeats(view.seats(), rng);
+                Arrays.fill(everyone, rollout);
+            }
+
+            @Override
+            public void run() {
+                boolean queued = false;
+                try {
+                    long now = System.nanoTime();
+                    if (now >= deadline || result.isDone()) {
+                        //queued behind other bots for the whole budget
+                        return;
+                    }
+                    long sliceEnd = Math.min(deadline, now + SLICE_NANOS);
+                    Arrays.fill(won, 0);
+                    long guesses = 0;
+                    do {
+                        guess(guess, unseen, rng);
+                        for (int i = 0; i < options.length; i++) {
+                            play.copyFrom(guess);
+                            playOut(play, options[i], everyone, stats);
+                            if (play.winner() == seat) {
+                                won[i]++;
+                            }
+                        }
+                        guesses++;
+                    } while (System.nanoTime() < sliceEnd);
+
+                    for (int i = 0; i < options.length; i++) {
+                        wins.addAndGet(i, won[i]);
+                    }
+                    playouts.addAndGet(guesses * options.length);
+                    if (System.nanoTime() < deadline) {
+                        //behind whatever other searches queued meanwhile
+                        POOL.execute(this);
+                        queued = true;
+                    }
+                } finally {
+                    if (!queued && running.decrementAndGet() == 0) {
+                        finish();
+                    }
+                }
+            }
+        }
+
+        //deals everyone else a hand of the size they hold, from the cards we can't see
+        private void guess(BluffGame guess, int[] unseen, SplittableRandom rng) {
+            guess.copyFrom(view);
+            Hand mine = view.hand(seat);
+            //what we put on the pile this round is no more unknown to us than our hand, as in BluffOracle
+            int put = view.playedThisRound(seat);
+            int left = 0;
+            for (int card = 0; card < Cards.NUM_TYPES; card++) {
+                unseen[card] = Cards.copiesInDeck(card) - mine.count(card) - Hand.count(put, card);
+                left += unseen[card];
+            }
+            for (int other = 0; other < view.seats(); other++) {
+                if (other == seat) {
+                    continue;
+                }
+                Hand hand = guess.hand(other);
+                int size = hand.size();
+                hand.clear();
+                for (int i = 0; i < size; i++) {
+                    hand.add(draw(unseen, left--, rng));
+                }
+            }
+            if (bluff) {
+                //what's left was played this round, the last move among it
+                int played = 0;
+                for (int i = view.lastCount(); i > 0; i--) {
+                    played += Hand.pack(draw(unseen, left--, rng), 1);
+                }
+                guess.assumeLastPlayed(played);
+            }
+        }
+
+        //plays one option on to the end of the game
+        private void playOut(BluffGame play, int option, Strategy[] everyone, Simulation.Stats stats) {
+            if (!bluff) {
+                play.play(Strategy.actual(option), Strategy.fake(option));
+                Simulation.playRound(play, everyone, true, MAX_TURNS, stats);
+            } else if (option == CALL) {
+                play.callBluff(seat);
+            } else if (!play.endTurn()) {
+                Simulation.playRound(play, everyone, false, MAX_TURNS, stats);
+            }
+            Simulation.playOut(play, everyone, MAX_TURNS, stats);
+        }
+
+        void finish() {
+            if (result.isDone()) {
+                return;
+            }
+            int best = -1;
+            if (playouts.get() > 0) {
+                best = 0;
+                for (int i = 1; i < options.length; i++) {
+                    if (wins.get(i) > wins.get(best)) {
+                        best = i;
+                    }
+                }
+            }
+            if (result.complete(best)) {
+                Metrics.BOT_THINK.recordNanos(System.nanoTime() - started);
+                Metrics.BOT_PLAYOUTS.add(playouts.get());
+            }
+        }
+    }
+
+    //takes one card at random out of the unseen counts
+    private static int draw(int[] unseen, int left, SplittableRandom rng) {
+        int r = rng.nextInt(left);
+        int card = 0;
+        while (r >= unseen[card]) {
+            r -= unseen[card];
+            card++;
+        }
+        unseen[card]--;
+        return card;
+    }
+
+    @Override
+    public String toString() {
+        return "monte-carlo(" + TimeUnit.NANOSECONDS.toMillis(budgetNanos) + "ms)";
+    }
+}
@@ -0,0 +1,505 @@
+package bluff;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * A non-blocking socket owned by an {@link IoLoop}. Reads are split into
+ * lines (or {@link Wire} frames) and handed to the player; writes are
+ * queued by any thread and drained by the loop.
+ *
+ * The first bytes decide what the client is: MAGIC for the binary
+ * protocol, "GET " for a browser (a static file, or a WebSocket carrying
+ * Wire frames), anything else or nothing at all for plain text. The
+ * player only joins the lobby once that is settled.
+ */
+public class NioConnection implements Connection, IoLoop.Handler {
+    private static final int MAX_LINE = 1024;
+    //a browser's request head is bigger than any game message
+    private static final int MAX_HEAD = 8192;
+    //a text client such as nc may never send anything until its turn
+    private static final long NEGOTIATE_MS = 250;
+
+    private enum Mode { UNKNOWN, TEXT, BINARY, HTTP, WEBSOCKET }
+
+    //sent as they are to every quiet client, shared and read-only
+    private static final ByteBuffer PING = ByteBuffer.wrap(Wire.frame(Wire.PING)).asReadOnlyBuffer();
+    private static final ByteBuffer WS_PING = ByteBuffer.wrap(Http.wsHeader(Http.WS_PING, 0)).asReadOnlyBuffer();
+
+    private final SocketChannel channel;
+    private final IoLoop loop;
+    private ByteBuffer readBuf = ByteBuffer.allocate(MAX_LINE);
+    private final Outbox outbox = new Outbox();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    //made once, scheduling a flush happens for nearly every message
+    private final Runnable flushTask = this::flush;
+    private volatile boolean closed = false;
+    private volatile boolean binary = false;
+    private volatile boolean webSocket = false;
+    //when the client last sent anything, for the heartbeat
+    private volatile long lastHeard = System.nanoTime();
+    //loop thread only
+    private Mode mode = Mode.UNKNOWN;
+    //a static file on its way out, sent straight from the page cache once the outbox is empty
+    private FileChannel file;
+    private long filePos;
+    private long fileEnd;
+    //the HTTP response is all queued, close once it's written
+    private boolean lastResponse = false;
+    private SelectionKey key;
+    private ClientHandler handler;
+
+    public NioConnection(SocketChannel channel, IoLoop loop) {
+        this.channel = channel;
+        this.loop = loop;
+        Metrics.CONNECTIONS.increment();
+    }
+
+    @Override
+    public void bind(ClientHandler handler) {
+        this.handler = handler;
+    }
+
+    @Override
+    public void setKey(SelectionKey key) {
+        this.key = key;
+        loop.schedule(() -> {
+            if (mode == Mode.UNKNOWN && !closed) {
+                //said nothing yet, so it's a text client
+                settle(Mode.TEXT);
+                handler.ready();
+            }
+        }, NEGOTIATE_MS);
+        if (HEARTBEAT_MS > 0) {
+            Table.TIMER.schedule(this::heartbeat, HEARTBEAT_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    //on the timer wheel: pings a quiet client, or lets it go once it has stopped answering
+    private void heartbeat() {
+        if (closed || !binary) {
+            //text clients can't answer pings, a turn deadline is all that times them out
+            return;
+        }
+        long silent = System.nanoTime() - lastHeard;
+        if (IDLE_MS > 0 && silent >= TimeUnit.MILLISECONDS.toNanos(IDLE_MS)) {
+            Metrics.IDLE_DISCONNECTS.increment();
+            close();
+            return;
+        }
+        if (silent >= TimeUnit.MILLISECONDS.toNanos(HEARTBEAT_MS)) {
+            synchronized (outbox) {
+                //browsers answer a WebSocket ping by themselves
+                queued(outbox.offer(webSocket ? WS_PING : PING));
+            }
+        }
+        Table.TIMER.schedule(this::heartbeat, HEARTBEAT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void send(String line) {
+        if (closed) {
+            return;
+        }
+        //encode under the lock so nothing can slip in either side of the switch to binary
+        synchronized (outbox) {
+            byte[] bytes = binary ? Wire.text(line) : (line + "\n").getBytes(StandardCharsets.UTF_8);
+            enqueue(bytes);
+        }
+    }
+
+    @Override
+    public void sendFrame(byte[] frame) {
+        if (closed) {
+            return;
+        }
+        enqueue(frame);
+    }
+
+    @Override
+    public void sendHandDelta(int version, int before, int after) {
+        if (closed) {
+            return;
+        }
+        synchronized (outbox) {
+            ByteBuffer into = webSocket
+                ? outbox.room(Http.wsBinaryHeader(Wire.HAND_DELTA_BYTES), Wire.HAND_DELTA_BYTES)
+                : outbox.room(Wire.HAND_DELTA_BYTES);
+            if (into != null) {
+                Wire.putHandDelta(into, version, before, after);
+            }
+            queued(into != null);
+        }
+    }
+
+    @Override
+    public void announce(Announcement announcement) {
+        if (closed) {
+            return;
+        }
+        //same lock as send, so the form can't change under us
+        synchronized (outbox) {
+            int form = webSocket ? Announcement.WEB_SOCKET : binary ? Announcement.FRAME : Announcement.LINES;
+            queued(outbox.offer(announcement, form));
+        }
+    }
+
+    @Override
+    public boolean isBinary() {
+        return binary;
+    }
+
+    private void enqueue(byte[] bytes) {
+        //a browser gets each frame as one WebSocket message, header and frame queued together
+        queued(webSocket ? outbox.offer(Http.wsBinaryHeader(bytes.length), bytes) : outbox.offer(bytes));
+    }
+
+    //what to do about a message the outbox did or didn't take
+    private void queued(boolean fit) {
+        if (fit) {
+            scheduleFlush();
+            return;
+        }
+
+        //client is not reading, don't let it hold anyone up
+        Metrics.SLOW_CONSUMERS.increment();
+        switch (Outbox.POLICY) {
+            case DROP -> { }
+            case DISCONNECT -> close();
+            case ELIMINATE -> {
+                handler.slowConsumer();
+                close();
+            }
+        }
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            loop.execute(flushTask);
+        }
+    }
+
+    //called on the loop thread once we know what the client speaks
+    private void settle(Mode mode) {
+        this.mode = mode;
+        if (mode == Mode.HTTP) {
+            //static requests never become players
+            ByteBuffer bigger = ByteBuffer.allocate(MAX_HEAD);
+            bigger.put(readBuf);
+            bigger.flip();
+            readBuf = bigger;
+        }
+    }
+
+    //called on the loop thread
+    @Override
+    public void onReadable() {
+        int n;
+        try {
+            n = channel.read(readBuf);
+        } catch (IOException e) {
+            n = -1;
+        }
+        if (n < 0) {
+            close();
+            return;
+        }
+        if (n > 0) {
+            lastHeard = System.nanoTime();
+        }
+
+        readBuf.flip();
+        boolean settling = mode == Mode.UNKNOWN;
+        if (settling && (!readBuf.hasRemaining() || !negotiate())) {
+            //not enough bytes to tell yet
+            readBuf.compact();
+            return;
+        }
+        switch (mode) {
+            case BINARY -> readFrames();
+            case HTTP -> readRequest();
+            case WEBSOCKET -> readWebSocket();
+            default -> readLines();
+        }
+        readBuf.compact();
+        if (settling && (mode == Mode.TEXT || mode == Mode.BINARY)) {
+            //only now, so a RESUME sent with the first bytes takes its seat back instead of joining the lobby
+            handler.ready();
+        }
+
+        //nobody sends a line this long, drop them
+        if (!readBuf.hasRemaining()) {
+            close();
+        }
+    }
+
+    //looks at the first bytes; false if they could still turn out to be "GET "
+    private boolean negotiate() {
+        int start = readBuf.position();
+        if (readBuf.get(start) == Wire.MAGIC) {
+            //client wants binary, echo MAGIC so it knows where frames start
+            readBuf.get();
+            synchronized (outbox) {
+                binary = true;
+                enqueue(new byte[] {Wire.MAGIC});
+            }
+            settle(Mode.BINARY);
+            return true;
+        }
+        for (int i = 0; i < Http.GET.length; i++) {
+            if (start + i == readBuf.limit()) {
+                return false;
+            }
+            if (readBuf.get(start + i) != Http.GET[i]) {
+                settle(Mode.TEXT);
+                return true;
+            }
+        }
+        settle(Mode.HTTP);
+        return true;
+    }
+
+    private void readLines() {
+        //hand every complete line to the player
+        int start = readBuf.position();
+        for (int i = start; i < readBuf.limit(); i++) {
+            if (readBuf.get(i) == '\n') {
+                int end = i;
+                if (end > start && readBuf.get(end - 1) == '\r') {
+                    end--;
+                }
+                byte[] bytes = new byte[end - start];
+                readBuf.get(start, bytes);
+                handler.receive(new String(bytes, StandardCharsets.UTF_8));
+                start = i + 1;
+            }
+        }
+        readBuf.position(start);
+    }
+
+    private void readFrames() {
+        //hand every complete frame to the player
+        while (readBuf.remaining() >= 2) {
+            int pos = readBuf.position();
+            int len = readBuf.getShort(pos) & 0xFFFF;
+            if (len == 0 || len + 2 > readBuf.capacity()) {
+                close();
+                return;
+            }
+            if (readBuf.remaining() < len + 2) {
+                return;
+            }
+            byte opcode = readBuf.get(pos + 2);
+            byte[] payload = new byte[len - 1];
+            readBuf.get(pos + 3, payload);
+            readBuf.position(pos + 2 + len);
+            handler.receiveFrame(opcode, payload);
+        }
+    }
+
+    private void readRequest() {
+        int end = Http.headEnd(readBuf);
+        if (end < 0) {
+            return;
+        }
+        byte[] head = new byte[end - readBuf.position()];
+        readBuf.get(head);
+        Http.Request request = Http.parse(new String(head, StandardCharsets.ISO_8859_1));
+        if (request == null) {
+            respond(400, "Bad Request");
+            return;
+        }
+
+        if (request.isWebSocket()) {
+            //a browser player: from here on it's Wire frames inside WebSocket messages
+            synchronized (outbox) {
+                enqueue(Http.upgrade(request));
+                binary = true;
+                webSocket = true;
+            }
+            mode = Mode.WEBSOCKET;
+            //a page reconnecting asks for its seat back in the URL, before it could be put in the lobby
+            String token = request.query("resume");
+            if (!token.isEmpty()) {
+                handler.receive("RESUME " + token);
+            }
+            //same for a page that only wants to watch
+            String watch = request.query("watch");
+            if (!watch.isEmpty()) {
+                handler.receive("WATCH " + watch);
+            }
+            handler.ready();
+            readWebSocket();
+            return;
+        }
+
+        Path path = Http.resolve(request.path);
+        if (path == null) {
+            respond(404, "Not Found");
+            return;
+        }
+        try {
+            file = FileChannel.open(path, StandardOpenOption.READ);
+            fileEnd = file.size();
+            enqueue(Http.responseHead(200, "OK", Http.contentType(path), fileEnd));
+        } catch (IOException e) {
+            close();
+        }
+        lastRequest();
+    }
+
+    //a short plain-text answer instead of a file
+    private void respond(int status, String reason) {
+        byte[] body = (reason + "\n").getBytes(StandardCharsets.US_ASCII);
+        enqueue(Http.responseHead(status, reason, "text/plain", body.length));
+        enqueue(body);
+        lastRequest();
+    }
+
+    //one request per connection, close once it's all out
+    private void lastRequest() {
+        readBuf.position(readBuf.limit());
+        lastResponse = true;
+        outbox.close();
+        scheduleFlush();
+    }
+
+    private void readWebSocket() {
+        //browsers never fragment messages this small, so each one is a whole frame or text command
+        while (readBuf.remaining() >= 2) {
+            int pos = readBuf.position();
+            int opcode = readBuf.get(pos) & 0x0F;
+            int len = readBuf.get(pos + 1) & 0x7F;
+            int headLen = 2;
+            if (len == 126) {
+                if (readBuf.remaining() < 4) {
+                    return;
+                }
+                len = readBuf.getShort(pos + 2) & 0xFFFF;
+                headLen = 4;
+            } else if (len == 127) {
+                close();
+                return;
+            }
+            //browser messages are always masked
+            headLen += 4;
+            if (headLen + len > readBuf.capacity()) {
+                close();
+                return;
+            }
+            if (readBuf.remaining() < headLen + len) {
+                return;
+            }
+            byte[] payload = new byte[len];
+            for (int i = 0; i < len; i++) {
+                payload[i] = (byte) (readBuf.get(pos + headLen + i) ^ readBuf.get(pos + headLen - 4 + (i & 3)));
+            }
+            readBuf.position(pos + headLen + len);
+
+            switch (opcode) {
+                case Http.WS_BINARY -> {
+                    ByteBuffer frames = ByteBuffer.wrap(payload);
+                    while (frames.remaining() >= 3) {
+                        int frameLen = frames.getShort() & 0xFFFF;
+                        if (frameLen == 0 || frameLen > frames.remaining()) {
+                            break;
+                        }
+                        byte op = frames.get();
+                        byte[] body = new byte[frameLen - 1];
+                        frames.get(body);
+                        handler.receiveFrame(op, body);
+                    }
+                }
+                case Http.WS_TEXT -> handler.receive(new String(payload, StandardCharsets.UTF_8));
+                case Http.WS_PING -> {
+                    outbox.offer(ByteBuffer.wrap(Http.wsHeader(Http.WS_PONG, len)), ByteBuffer.wrap(payload));
+                    scheduleFlush();
+                }
+                case Http.WS_PONG -> { }
+                default -> {
+                    //close, or something we don't speak
+                    close();
+                    return;
+                }
+            }
+        }
+    }
+
+    //called on the loop thread
+    @Override
+    public void flush() {
+        flushScheduled.set(false);
+        if (closed || key == null) {
+            return;
+        }
+        try {
+            //everything queued since the last flush goes out in one gathering write
+            int pending = outbox.peekAll();
+            if (pending > 0) {
+                channel.write(outbox.views(), 0, pending);
+                outbox.consumed();
+            }
+            if (outbox.isEmpty() && file != null) {
+                //zero-copy: the kernel moves the file to the socket without it passing through us
+                filePos += file.transferTo(filePos, fileEnd - filePos, channel);
+                if (filePos >= fileEnd) {
+                    file.close();
+                    file = null;
+                }
+            }
+            if (outbox.isEmpty() && file == null) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                if (lastResponse) {
+                    close();
+                }
+            } else {
+                //socket is full, wait until it can take more
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            }
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    @Override
+    public void close() {
+        loop.execute(() -> {
+            if (closed) {
+                return;
+            }
+            if (webSocket) {
+                //a proper goodbye, so the page sees a clean close
+                outbox.offer(ByteBuffer.wrap(Http.wsHeader(Http.WS_CLOSE, 0)));
+            }
+            //one last try at whatever was queued, e.g. "Game Over"
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                //it's closing anyway, maybe because of this
+            }
+            closed = true;
+            outbox.close();
+            if (key != null) {
+                key.cancel();
+            }
+            try {
+                channel.close();
+                if (file != null) {
+                    file.close();
+                }
+            } catch (IOException e) {
+                //already gone
+            }
+            outbox.discard();
+            Metrics.CONNECTIONS.decrement();
+            if (handler != null) {
+                handler.disconnected(this);
+            }
+        });
+    }
+}
@@ -0,0 +1,436 @@
+package bluff;
+
+import java.nio.*;
+import java.util.*;
+
+/**
+ * The bounded queue of bytes waiting to go out on one connection. The game
+ * only ever adds to it; the I/O side takes everything queued so far and
+ * writes it in one go, so a burst of broadcasts costs one write instead of
+ * one per message.
+ *
+ * Two kinds of bytes are queued, oldest first. A public event goes in as
+ * a view of the {@link Announcement}'s own shared bytes, so fanning one
+ * out to a whole table and its spectators copies nothing. Everything
+ * meant for this connection alone (its hand, a reply, a text line) is
+ * copied, or encoded in place, back to back into fixed-size direct
+ * buffers (chunks) taken from a pool shared by every connection. A chunk
+ * goes back to the pool, and a view back to its announcement, as soon as
+ * it has been written out, so queueing and writing allocate nothing and
+ * an idle connection holds no chunks at all.
+ *
+ * When a client stops reading, its outbox fills up and the connection
+ * applies the slow-consumer {@link Policy} instead of blocking the table.
+ */
+public class Outbox {
+    public enum Policy {
+        //throw away messages that do not fit
+        DROP,
+        //close the connection, the table treats it like any disconnect
+        DISCONNECT,
+        //take them out of their game straight away, then close
+        ELIMINATE
+    }
+
+    public static final int LIMIT = Integer.getInteger("bluff.outboxBytes", 64 * 1024);
+    public static final Policy POLICY = Policy.valueOf(System.getProperty("bluff.slowPolicy", "DISCONNECT").toUpperCase());
+    //-Dbluff.chunkBytes: size of each pooled buffer
+    static final int CHUNK_BYTES = Integer.getInteger("bluff.chunkBytes", 4096);
+    //-Dbluff.pooledChunks: free chunks kept for reuse, beyond that they are left to the GC
+    private static final Pool POOL = new Pool(Integer.getInteger("bluff.pooledChunks", 4096));
+
+    /**
+     * One pooled direct buffer. Senders append at in's position. Every run
+     * of bytes appended between two announcements is one segment, written
+     * out through a view of its own; the views are made once and kept with
+     * the chunk, since a chunk is only reused once all of them are written.
+     */
+    private static final class Chunk {
+        final ByteBuffer in = ByteBuffer.allocateDirect(CHUNK_BYTES);
+        private ByteBuffer[] views = new ByteBuffer[2];
+        private int used = 0;
+        //segments still queued
+        int live = 0;
+
+        //a view for a new segment starting at in's position
+        ByteBuffer segment() {
+            if (used == views.length) {
+                views = Arrays.copyOf(views, views.length * 2);
+            }
+            if (views[used] == null) {
+                views[used] = in.duplicate();
+            }
+            ByteBuffer view = views[used++];
+            view.clear();
+            view.position(in.position()).limit(in.position());
+            live++;
+            return view;
+        }
+
+        void reset() {
+            in.clear();
+            used = 0;
+            live = 0;
+        }
+    }
+
+    /**
+     * Free chunks, a plain stack under a lock so taking and returning one
+     * allocates nothing.
+     */
+    private static final class Pool {
+        private final Chunk[] free;
+        private int size = 0;
+
+        Pool(int max) {
+            free = new Chunk[Math.max(0, max)];
+        }
+
+        synchronized Chunk take() {
+            if (size == 0) {
+                Metrics.POOLED_CHUNKS.increment();
+                return new Chunk();
+            }
+            Chunk chunk = free[--size];
+            free[size] = null;
+            return chunk;
+        }
+
+        synchronized void give(Chunk chunk) {
+            chunk.reset();
+            if (size < free.length) {
+                free[size++] = chunk;
+            } else {
+                Metrics.POOLED_CHUNKS.decrement();
+            }
+        }
+    }
+
+    //what's queued, oldest first, as a ring: the view each entry is written from,
+    private ByteBuffer[] entries = new ByteBuffer[8];
+    //the chunk it is a segment of, or else the announcement it came from,
+    private Chunk[] chunkOf = new Chunk[8];
+    private Announcement[] sharedOf = new Announcement[8];
+    //where it ends, and how far it had been written at the last consumed(), for counting bytes
+    private int[] ends = new int[8];
+    private int[] counted = new int[8];
+    private int head = 0;
+    private int count = 0;
+    //the newest chunk, which senders go on filling
+    private Chunk tail;
+    //handed to the writer by peekAll(), reused every time; only the writer replaces it
+    private ByteBuffer[] views = new ByteBuffer[8];
+    private int bytes = 0;
+    private boolean closed = false;
+
+    /**
+     * Copies in the bytes between the buffer's position and limit, unless
+     * that would go over {@link #LIMIT}. The buffer itself is left as it
+     * was, so one shared read-only buffer can go to any number of outboxes.
+     *
+     * @return False if the client is too far behind to take it
+     */
+    public synchronized boolean offer(ByteBuffer buf) {
+        if (closed) {
+            return true;
+        }
+        if (!reserve(buf.remaining())) {
+            return false;
+        }
+        append(buf);
+        return true;
+    }
+
+    /**
+     * Copies in a header and its body back to back, both or neither, so
+     * another sender can't come between them.
+     */
+    public synchronized boolean offer(ByteBuffer header, ByteBuffer body) {
+        if (closed) {
+            return true;
+        }
+        if (!reserve(header.remaining() + body.remaining())) {
+            return false;
+        }
+        append(header);
+        append(body);
+        return true;
+    }
+
+    public synchronized boolean offer(byte[] bytes) {
+        if (closed) {
+            return true;
+        }
+        if (!reserve(bytes.length)) {
+            return false;
+        }
+        append(bytes);
+        return true;
+    }
+
+    public synchronized boolean offer(ByteBuffer header, byte[] body) {
+        if (closed) {
+            return true;
+        }
+        if (!reserve(header.remaining() + body.length)) {
+            return false;
+        }
+        append(header);
+        append(body);
+        return true;
+    }
+
+    /**
+     * Queues a public event without copying it: the writer writes straight
+     * from the announcement's shared bytes.
+     *
+     * @param form See {@link Announcement#view}
+     */
+    public synchronized boolean offer(Announcement announcement, int form) {
+        if (closed) {
+            return true;
+        }
+        if (!reserve(announcement.size(form))) {
+            return false;
+        }
+        ByteBuffer view = announcement.view(form);
+        push(view, null, announcement);
+        return true;
+    }
+
+    /**
+     * Room for one message of exactly {@code size} bytes (at most a chunk),
+     * for the caller to encode straight into with relative puts. Hold the
+     * outbox's lock from here until it is written, so the writer can't see
+     * it half done.
+     *
+     * @return The buffer to put it into, or null if the client is too far behind to take it
+     */
+    public synchronized ByteBuffer room(int size) {
+        return room(null, size);
+    }
+
+    /**
+     * Like {@link #room(int)}, with a header copied in just before it.
+     */
+    public synchronized ByteBuffer room(ByteBuffer header, int size) {
+        if (closed) {
+            //nowhere, it's closed
+            return ByteBuffer.allocate(size);
+        }
+        if (size > CHUNK_BYTES || !reserve((header == null ? 0 : header.remaining()) + size)) {
+            return null;
+        }
+        if (header != null) {
+            append(header);
+        }
+        ByteBuffer in = open(size);
+        //the caller fills it before the writer can get the lock to look
+        ends[last()] = in.position() + size;
+        return in;
+    }
+
+    //counts the bytes in, unless they would go over the limit
+    private boolean reserve(int size) {
+        if (bytes + size > LIMIT) {
+            return false;
+        }
+        bytes += size;
+        Metrics.OUTBOX_BYTES.add(size);
+        notifyAll();
+        return true;
+    }
+
+    private void append(ByteBuffer src) {
+        int from = src.position();
+        int left = src.remaining();
+        while (left > 0) {
+            ByteBuffer in = open(1);
+            int n = Math.min(left, in.remaining());
+            //an absolute copy, src's position never moves
+            in.put(in.position(), src, from, n);
+            in.position(in.position() + n);
+            ends[last()] = in.position();
+            from += n;
+            left -= n;
+        }
+    }
+
+    private void append(byte[] src) {
+        int from = 0;
+        while (from < src.length) {
+            ByteBuffer in = open(1);
+            int n = Math.min(src.length - from, in.remaining());
+            in.put(src, from, n);
+            ends[last()] = in.position();
+            from += n;
+        }
+    }
+
+    //the chunk to add to, with at least need bytes left in one piece; goes on with the last segment if nothing came after it
+    private ByteBuffer open(int need) {
+        if (tail != null && tail.in.remaining() >= need && count > 0 && chunkOf[last()] == tail) {
+            return tail.in;
+        }
+        if (tail == null || tail.in.remaining() < need) {
+            //the old tail goes back to the pool once its segments are written
+            tail = POOL.take();
+        }
+        push(tail.segment(), tail, null);
+        return tail.in;
+    }
+
+    private void push(ByteBuffer view, Chunk chunk, Announcement shared) {
+        if (count == entries.length) {
+            grow();
+        }
+        int i = (head + count) & (entries.length - 1);
+        entries[i] = view;
+        chunkOf[i] = chunk;
+        sharedOf[i] = shared;
+        ends[i] = view.limit();
+        counted[i] = view.position();
+        count++;
+    }
+
+    private void grow() {
+        int size = entries.length * 2;
+        ByteBuffer[] newEntries = new ByteBuffer[size];
+        Chunk[] newChunkOf = new Chunk[size];
+        Announcement[] newSharedOf = new Announcement[size];
+        int[] newEnds = new int[size];
+        int[] newCounted = new int[size];
+        for (int n = 0; n < count; n++) {
+            int i = (head + n) & (entries.length - 1);
+            newEntries[n] = entries[i];
+            newChunkOf[n] = chunkOf[i];
+            newSharedOf[n] = sharedOf[i];
+            newEnds[n] = ends[i];
+            newCounted[n] = counted[i];
+        }
+        entries = newEntries;
+        chunkOf = newChunkOf;
+        sharedOf = newSharedOf;
+        ends = newEnds;
+        counted = newCounted;
+        head = 0;
+    }
+
+    private int last() {
+        return (head + count - 1) & (entries.length - 1);
+    }
+
+    /**
+     * Everything queued so far, oldest first, ready for one gathering
+     * write from {@link #views()}. Only the one writer may call this; the
+     * views stay queued until {@link #consumed()} sees they are written.
+     *
+     * @return How many of the views hold something
+     */
+    public synchronized int peekAll() {
+        if (views.length < count) {
+            views = new ByteBuffer[entries.length];
+        }
+        for (int n = 0; n < count; n++) {
+            int i = (head + n) & (entries.length - 1);
+            //a segment may have grown since the last look; only the writer ever moves a view
+            entries[i].limit(ends[i]);
+            views[n] = entries[i];
+        }
+        return count;
+    }
+
+    /**
+     * The writer's views, filled in by {@link #peekAll()}. The array is
+     * reused by the next call.
+     */
+    public synchronized ByteBuffer[] views() {
+        return views;
+    }
+
+    /**
+     * Like {@link #peekAll()}, but waits until there is something to send.
+     *
+     * @return How many views hold something, 0 once closed and drained
+     */
+    public synchronized int awaitAll() throws InterruptedException {
+        while (bytes == 0 && !closed) {
+            wait();
+        }
+        return bytes == 0 ? 0 : peekAll();
+    }
+
+    /**
+     * Counts what the writer got out, and gives back every chunk and
+     * announcement view that has been written out completely.
+     */
+    public synchronized void consumed() {
+        while (count > 0) {
+            ByteBuffer view = entries[head];
+            int written = view.position() - counted[head];
+            counted[head] = view.position();
+            bytes -= written;
+            Metrics.OUTBOX_BYTES.add(-written);
+            if (view.position() < ends[head]) {
+                return;
+            }
+            release();
+        }
+    }
+
+    //drops the oldest entry, giving back what it was written from
+    private void release() {
+        Chunk chunk = chunkOf[head];
+        if (chunk != null) {
+            if (--chunk.live == 0) {
+                //everything in it is out; the next message takes a chunk from the pool again
+                if (chunk == tail) {
+                    tail = null;
+                }
+                POOL.give(chunk);
+            }
+        } else {
+            sharedOf[head].release(entries[head]);
+        }
+        entries[head] = null;
+        chunkOf[head] = null;
+        sharedOf[head] = null;
+        head = (head + 1) & (entries.length - 1);
+        count--;
+    }
+
+    public synchronized boolean isEmpty() {
+        return bytes == 0;
+    }
+
+    /**
+     * @return Bytes queued and not yet written
+     */
+    public synchronized int bytes() {
+        return bytes;
+    }
+
+    /**
+     * Stops taking new messages. Whatever is already queued can still be
+     * drained, so a goodbye message sent just before closing gets out.
+     */
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    /**
+     * Throws away whatever is left once the socket is gone for good. Only
+     * the writer may call this, once it has stopped writing.
+     */
+    public synchronized void discard() {
+        closed = true;
+        while (count > 0) {
+            release();
+        }
+        Arrays.fill(views, null);
+        Metrics.OUTBOX_BYTES.add(-bytes);
+        bytes = 0;
+        notifyAll();
+    }
+}
@@ -0,0 +1,43 @@
+package bluff;
+
+/**
+ * Plays one to three cards at random, lying some of the time, and calls
+ * bluff at a fixed rate. A baseline for balance testing.
+ */
+public class RandomStrategy implements Strategy {
+    private final double lieRate;
+    private final double bluffRate;
+
+    /**
+     * @param lieRate Chance of slipping fake cards in when real ones are available
+     * @param bluffRate Chance of calling bluff on any move
+     */
+    public RandomStrategy(double lieRate, double bluffRate) {
+        this.lieRate = lieRate;
+        this.bluffRate = bluffRate;
+    }
+
+    @Override
+    public int chooseMove(BluffGame game, int seat) {
+        Hand hand = game.hand(seat);
+        int real = hand.count(game.roundCard());
+        int other = hand.size() - real;
+        int want = 1 + game.random().nextInt(Math.min(3, hand.size()));
+
+        if (other > 0 && (real == 0 || game.random().nextDouble() < lieRate)) {
+            int fake = Math.min(want, other);
+            return Strategy.move(Math.min(want - fake, real), fake);
+        }
+        return Strategy.move(Math.min(want, real), 0);
+    }
+
+    @Override
+    public boolean callBluff(BluffGame game, int seat) {
+        return game.random().nextDouble() < bluffRate;
+    }
+
+    @Override
+    public String toString() {
+        return "random(lie=" + lieRate + ", bluff=" + bluffRate + ")";
+    }
+}
@@ -0,0 +1,464 @@
+package bluff;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * One address in front of several servers (shards), each running its own
+ * lobby and tables. The router reads a client's first bytes, picks the
+ * shard that should have it, replays those bytes to the shard and from
+ * then on copies bytes both ways until either side hangs up. Like the
+ * server, it does all of this on a few {@link IoLoop}s rather than a
+ * thread per client. Shards never know there is a router, except to
+ * report their load to it.
+ *
+ * A client asking for something a shard owns goes to that shard: a
+ * RESUME to the shard that gave out the token, a WATCH to the shard
+ * running the table. Tokens and table IDs say which shard they belong to
+ * ({@link #shardOfToken}, {@link #shardOfTable}), so the router keeps no
+ * map of them. Everyone else is a new player and goes to the lobby closest
+ * to filling a table, so players are not spread so thin that no table
+ * starts. Each shard sends a LOAD datagram to the router's port once a
+ * second; one that stops reporting gets no new players.
+ *
+ * java -Dbluff.port=12345 bluff.Router host:port host:port ...
+ * with the shards listed in order, shard 0 first.
+ */
+public class Router {
+    public static final int PORT = Integer.getInteger("bluff.port", 12345);
+    //how often a shard reports, and how long until a silent one counts as gone
+    static final long REPORT_MS = 1000;
+    private static final long STALE_NANOS = TimeUnit.MILLISECONDS.toNanos(3 * REPORT_MS);
+    //same as a server waits before deciding a silent client speaks text
+    private static final long NEGOTIATE_MS = 250;
+    //enough for a browser's request head, cookies and all, with a token in it
+    private static final int MAX_PEEK = 4096;
+    //one each way per client, off the heap so bytes go socket to socket without a copy through Java
+    private static final int RELAY_BUFFER = 8192;
+    //selector threads relaying for every client, one per core by default
+    private static final int IO_THREADS = Integer.getInteger("bluff.ioThreads", Runtime.getRuntime().availableProcessors());
+    //returned by decide() while the first bytes could still ask for something
+    private static final int UNDECIDED = -1;
+
+    /**
+     * What the router knows about one shard: its last report, nudged by
+     * every new player sent there since.
+     */
+    private static class Shard {
+        final int index;
+        final InetSocketAddress address;
+        //guarded by the router
+        long reportedAt = 0;
+        int tables = 0;
+        int players = 0;
+        int waiting = 0;
+        int tableSize = Integer.getInteger("bluff.tableSize", 4);
+
+        Shard(int index, InetSocketAddress address) {
+            this.index = index;
+            this.address = address;
+        }
+
+        boolean live(long now) {
+            return reportedAt != 0 && now - reportedAt < STALE_NANOS;
+        }
+    }
+
+    private final Shard[] shards;
+
+    public Router(List<InetSocketAddress> addresses) {
+        shards = new Shard[addresses.size()];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard(i, addresses.get(i));
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.out.println("Usage: java bluff.Router <shard_host:port> [<shard_host:port> ...]");
+            return;
+        }
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (String arg : args) {
+            addresses.add(address(arg));
+        }
+        new Router(addresses).start();
+    }
+
+    /**
+     * @param hostPort e.g. 127.0.0.1:12401
+     */
+    static InetSocketAddress address(String hostPort) {
+        int colon = hostPort.lastIndexOf(':');
+        return new InetSocketAddress(hostPort.substring(0, colon), Integer.parseInt(hostPort.substring(colon + 1)));
+    }
+
+    /**
+     * @return The shard that gave out this session token
+     */
+    public static int shardOfToken(long token, int shards) {
+        return (int) Long.remainderUnsigned(token, shards);
+    }
+
+    /**
+     * @return The shard running the table with this number
+     */
+    public static int shardOfTable(int tableID, int shards) {
+        return Math.floorMod(tableID, shards);
+    }
+
+    /**
+     * The datagram a shard sends the router, see {@link #report(String)}.
+     */
+    static String loadReport(int shard, int tables, int players, int waiting, int tableSize) {
+        return "LOAD " + shard + " " + tables + " " + players + " " + waiting + " " + tableSize;
+    }
+
+    private void start() {
+        Thread reports = new Thread(this::readReports, "router-reports");
+        reports.setDaemon(true);
+        reports.start();
+
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            serverChannel.bind(new InetSocketAddress(PORT), 1024);
+            IoLoop[] loops = new IoLoop[Math.max(1, IO_THREADS)];
+            for (int i = 0; i < loops.length; i++) {
+                loops[i] = new IoLoop(i);
+                loops[i].start();
+            }
+            System.out.println("Bluff Router started on port " + PORT + " for " + shards.length + " shard(s)");
+            int nextLoop = 0;
+            while (true) {
+                SocketChannel client = serverChannel.accept();
+                client.configureBlocking(false);
+                client.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                //spread clients over the loops, both ends of one client stay on its loop
+                IoLoop loop = loops[nextLoop];
+                nextLoop = (nextLoop + 1) % loops.length;
+                End end = new End(client, loop, null);
+                loop.register(client, end);
+                loop.schedule(end::negotiated, NEGOTIATE_MS);
+            }
+        } catch (IOException e) {
+            System.out.println("Error Starting the Router");
+        }
+    }
+
+    //load reports come in on the same port number as players, over UDP
+    private void readReports() {
+        try (DatagramChannel channel = DatagramChannel.open()) {
+            channel.bind(new InetSocketAddress(PORT));
+            ByteBuffer buf = ByteBuffer.allocate(256);
+            while (true) {
+                buf.clear();
+                channel.receive(buf);
+                buf.flip();
+                report(StandardCharsets.US_ASCII.decode(buf).toString());
+            }
+        } catch (IOException e) {
+            System.err.println("Not taking load reports: " + e.getMessage());
+        }
+    }
+
+    private synchronized void report(String line) {
+        String[] parts = line.trim().split(" ");
+        if (parts.length != 6 || !parts[0].equals("LOAD")) {
+            return;
+        }
+        try {
+            int index = Integer.parseInt(parts[1]);
+            if (index < 0 || index >= shards.length) {
+                return;
+            }
+            Shard shard = shards[index];
+            shard.tables = Integer.parseInt(parts[2]);
+            shard.players = Integer.parseInt(parts[3]);
+            shard.waiting = Integer.parseInt(parts[4]);
+            shard.tableSize = Math.max(1, Integer.parseInt(parts[5]));
+            shard.reportedAt = System.nanoTime();
+        } catch (NumberFormatException e) {
+            //not one of ours
+        }
+    }
+
+    /**
+     * One end of a routed client: the client's socket, or the shard's once
+     * one is picked. Both ends live on the same loop. Bytes read from one
+     * end wait in the other's buffer until they are written, and nothing
+     * more is read meanwhile, so a side that stops reading holds up the one
+     * sending to it instead of filling the router's memory.
+     */
+    private final class End implements IoLoop.Handler {
+        final SocketChannel channel;
+        final IoLoop loop;
+        //the shard this end is connected to, null for the client's end
+        final Shard shard;
+        //read from the other end and not yet written to this one
+        final ByteBuffer out = ByteBuffer.allocateDirect(RELAY_BUFFER).flip();
+        End peer;
+        SelectionKey key;
+        //the client's first bytes, until they have picked a shard
+        ByteBuffer first;
+
+        End(SocketChannel channel, IoLoop loop, Shard shard) {
+            this.channel = channel;
+            this.loop = loop;
+            this.shard = shard;
+            if (shard == null) {
+                first = ByteBuffer.allocate(MAX_PEEK);
+            }
+        }
+
+        @Override
+        public void setKey(SelectionKey key) {
+            this.key = key;
+        }
+
+        @Override
+        public void onReadable() {
+            if (first != null) {
+                peek();
+                return;
+            }
+            //only read while the other end has taken everything so far
+            try {
+                peer.out.clear();
+                int n = channel.read(peer.out);
+                peer.out.flip();
+                if (n < 0) {
+                    close();
+                    return;
+                }
+            } catch (IOException e) {
+                close();
+                return;
+            }
+            peer.flush();
+        }
+
+        //reads just enough of what the client says to pick a shard
+        private void peek() {
+            int n;
+            try {
+                n = channel.read(first);
+            } catch (IOException e) {
+                close();
+                return;
+            }
+            if (n < 0) {
+                close();
+                return;
+            }
+            int picked = decide(first, !first.hasRemaining());
+            if (picked != UNDECIDED) {
+                connect(shards[picked]);
+            }
+        }
+
+        //on the loop, NEGOTIATE_MS after accepting
+        void negotiated() {
+            if (first != null && channel.isOpen()) {
+                //said nothing more in time, so what we have is all there is to go on
+                connect(shards[decide(first, true)]);
+            }
+        }
+
+        //hands the client to a shard, its first bytes going ahead of everything else
+        private void connect(Shard shard) {
+            //nothing more from the client until the shard has taken those
+            key.interestOps(0);
+            try {
+                SocketChannel server = SocketChannel.open();
+                peer = new End(server, loop, shard);
+                peer.peer = this;
+                server.configureBlocking(false);
+                server.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                first.flip();
+                peer.out.clear();
+                peer.out.put(first).flip();
+                first = null;
+                boolean connected = server.connect(shard.address);
+                loop.register(server, connected ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT, peer);
+            } catch (IOException e) {
+                System.err.println("Shard " + shard.index + " at " + shard.address + " not reachable: " + e.getMessage());
+                close();
+            }
+        }
+
+        @Override
+        public void onConnectable() {
+            try {
+                if (!channel.finishConnect()) {
+                    return;
+                }
+            } catch (IOException e) {
+                System.err.println("Shard " + shard.index + " at " + shard.address + " not reachable: " + e.getMessage());
+                close();
+                return;
+            }
+            key.interestOps(SelectionKey.OP_READ);
+            flush();
+        }
+
+        @Override
+        public void flush() {
+            if (peer == null || !channel.isConnected()) {
+                //still picking a shard or connecting to it, nothing to write yet
+                return;
+            }
+            try {
+                channel.write(out);
+            } catch (IOException e) {
+                close();
+                return;
+            }
+            if (out.hasRemaining()) {
+                //wait until this end can take more, and read nothing more for it meanwhile
+                key.interestOpsOr(SelectionKey.OP_WRITE);
+                peer.key.interestOpsAnd(~SelectionKey.OP_READ);
+            } else {
+                key.interestOpsAnd(~SelectionKey.OP_WRITE);
+                peer.key.interestOpsOr(SelectionKey.OP_READ);
+            }
+        }
+
+        //either way the client's session with the shard is over, as if it had dropped
+        @Override
+        public void close() {
+            Router.close(channel);
+            if (peer != null) {
+                Router.close(peer.channel);
+            }
+        }
+    }
+
+    private static void close(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            //already gone
+        }
+    }
+
+    /**
+     * Which shard the first bytes ask for: the owner of a RESUME token
+     * or of a watched table, any shard for a page load, otherwise
+     * wherever a new player fits best.
+     *
+     * @param done No more bytes are coming before we must decide
+     * @return The shard, or UNDECIDED if more bytes could still change it
+     */
+    private int decide(ByteBuffer first, boolean done) {
+        byte[] b = first.array();
+        int n = first.position();
+        if (n == 0) {
+            return done ? place() : UNDECIDED;
+        }
+        if (b[0] == Wire.MAGIC) {
+            //a binary client resuming sends its RESUME frame along with MAGIC: MAGIC, length, opcode, 8-byte token
+            if (n == 1 || (n >= 4 && b[3] != Wire.RESUME)) {
+                return place();
+            }
+            if (n < 12) {
+                return done ? place() : UNDECIDED;
+            }
+            return shardOfToken(Wire.tokenOf(Arrays.copyOfRange(b, 4, 12)), shards.length);
+        }
+
+        int end = 0;
+        while (end < n && b[end] != '\n') {
+            end++;
+        }
+        if (end == n && !done) {
+            return UNDECIDED;
+        }
+        String line = new String(b, 0, end, StandardCharsets.ISO_8859_1).trim();
+        String resume = "";
+        String watch = null;
+        if (line.startsWith("GET ")) {
+            //only the headers say whether it is a player's WebSocket or the page and its files
+            int head = Http.headEnd(ByteBuffer.wrap(b, 0, n));
+            if (head < 0 && !done) {
+                return UNDECIDED;
+            }
+            Http.Request request = Http.parse(new String(b, 0, head < 0 ? n : head, StandardCharsets.ISO_8859_1));
+            if (request == null || !request.isWebSocket()) {
+                //any shard serves the page, or turns a bad request away; nobody joins, so nobody is counted
+                return busiest();
+            }
+            //a page asks for its seat or a table in the WebSocket URL
+            resume = request.query("resume");
+            if (!request.query("watch").isEmpty()) {
+                watch = request.query("watch");
+            }
+        } else if (line.regionMatches(true, 0, "RESUME ", 0, 7)) {
+            resume = line.substring(7).trim();
+        } else if (line.equalsIgnoreCase("WATCH") || line.regionMatches(true, 0, "WATCH ", 0, 6)) {
+            watch = line.substring(5).trim();
+        }
+
+        if (!resume.isEmpty()) {
+            try {
+                return shardOfToken(Long.parseUnsignedLong(resume, 16), shards.length);
+            } catch (NumberFormatException e) {
+                //the shard will tell them it's not a token
+                return place();
+            }
+        }
+        if (watch != null) {
+            if (watch.isEmpty() || watch.equalsIgnoreCase("any")) {
+                return busiest();
+            }
+            try {
+                return shardOfTable(Integer.parseInt(watch), shards.length);
+            } catch (NumberFormatException e) {
+                return busiest();
+            }
+        }
+        return place();
+    }
+
+    //a new player goes to the lobby with the most people waiting, else the shard with the fewest players
+    private synchronized int place() {
+        long now = System.nanoTime();
+        boolean anyLive = false;
+        for (Shard shard : shards) {
+            anyLive |= shard.live(now);
+        }
+        Shard best = null;
+        for (Shard shard : shards) {
+            //before the first report every shard is a candidate, going by our own count
+            if (anyLive && !shard.live(now)) {
+                continue;
+            }
+            if (best == null || shard.waiting > best.waiting
+                || (shard.waiting == best.waiting && shard.players < best.players)) {
+                best = shard;
+            }
+        }
+        //counted now, so a burst of players between reports fills one table at a time
+        best.players++;
+        if (++best.waiting >= best.tableSize) {
+            best.waiting = 0;
+            best.tables++;
+        }
+        return best.index;
+    }
+
+    //a spectator who does not mind which table goes where the most games are, and so does a page load
+    private synchronized int busiest() {
+        long now = System.nanoTime();
+        Shard best = shards[0];
+        for (Shard shard : shards) {
+            if (shard.live(now) && (!best.live(now) || shard.tables > best.tables)) {
+                best = shard;
+            }
+        }
+        return best.index;
+    }
+}
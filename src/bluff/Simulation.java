@@ -0,0 +1,158 @@
+package bluff;
+
+import java.util.*;
+import java.util.stream.*;
+
+/**
+ * Plays Bluff games between bots with no network at all, spread over every
+ * core. Each game gets its own seed derived from the base seed and the
+ * game's index, so a run gives the same totals however the games land on
+ * threads.
+ *
+ * Usage: java bluff.Simulation [games] [seed]
+ */
+public class Simulation {
+    //a game this long means the bots are stuck passing
+    private static final int MAX_TURNS = 10_000;
+
+    private final Strategy[] strategies;
+
+    public Simulation(Strategy... strategies) {
+        this.strategies = strategies;
+    }
+
+    /**
+     * Totals over many games. Merged across threads, so keep it to counters.
+     */
+    public static class Stats {
+        final long[] wins;
+        long games;
+        long unfinished;
+        long turns;
+        long bluffsCalled;
+        long bluffsCaught;
+
+        Stats(int seats) {
+            wins = new long[seats];
+        }
+
+        void merge(Stats other) {
+            for (int i = 0; i < wins.length; i++) {
+                wins[i] += other.wins[i];
+            }
+            games += other.games;
+            unfinished += other.unfinished;
+            turns += other.turns;
+            bluffsCalled += other.bluffsCalled;
+            bluffsCaught += other.bluffsCaught;
+        }
+    }
+
+    /**
+     * Plays one full game into the given totals.
+     */
+    public void playOne(long seed, Stats stats) {
+        BluffGame game = BluffGame.withSeats(strategies.length, new SplittableRandom(seed));
+        int turns = playOut(game, strategies, MAX_TURNS, stats);
+
+        stats.games++;
+        stats.turns += turns;
+        if (game.winner() == BluffGame.NO_ONE) {
+            stats.unfinished++;
+        } else {
+            stats.wins[game.winner()]++;
+        }
+    }
+
+    /**
+     * Deals and plays whole rounds until the game is over.
+     *
+     * @return Turns played, at most {@code maxTurns} + 1
+     */
+    static int playOut(BluffGame game, Strategy[] strategies, int maxTurns, Stats stats) {
+        int turns = 0;
+        while (!game.isOver() && turns < maxTurns) {
+            game.startRound();
+            turns += playRound(game, strategies, false, maxTurns - turns, stats);
+        }
+        return turns;
+    }
+
+    /**
+     * Plays the current round on from whoever's turn it is until someone
+     * is caught, someone empties their hand, or {@code maxTurns} runs out.
+     *
+     * @param moved True if the seat whose turn it is already made its move
+     * @return Turns played
+     */
+    static int playRound(BluffGame game, Strategy[] strategies, boolean moved, int maxTurns, Stats stats) {
+        int turns = 0;
+        while (turns++ < maxTurns) {
+            int seat = game.turn();
+            if (!moved) {
+                int move = strategies[seat].chooseMove(game, seat);
+                if (game.play(Strategy.actual(move), Strategy.fake(move)) < 0) {
+                    //bot asked for something it doesn't hold, put down any one card
+                    boolean hasReal = game.hand(seat).count(game.roundCard()) > 0;
+                    game.play(hasReal ? 1 : 0, hasReal ? 0 : 1);
+                }
+            }
+            moved = false;
+
+            //everyone else gets a chance to call, in seat order after the mover
+            int accuser = BluffGame.NO_ONE;
+            for (int i = 1; i < game.seats() && accuser == BluffGame.NO_ONE; i++) {
+                int other = (seat + i) % game.seats();
+                if (game.isAlive(other) && strategies[other].callBluff(game, other)) {
+                    accuser = other;
+                }
+            }
+            if (accuser != BluffGame.NO_ONE) {
+                stats.bluffsCalled++;
+                if (game.callBluff(accuser) == seat) {
+                    stats.bluffsCaught++;
+                }
+                break;
+            }
+            if (game.endTurn()) {
+                break;
+            }
+        }
+        return turns;
+    }
+
+    /**
+     * Plays {@code games} games in parallel.
+     */
+    public Stats run(long games, long seed) {
+        return LongStream.range(0, games).parallel().collect(
+            () -> new Stats(strategies.length),
+            (stats, i) -> playOne(Cards.seed(seed, i), stats),
+            Stats::merge);
+    }
+
+    public static void main(String[] args) {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        Simulation sim = new Simulation(
+            new RandomStrategy(0.3, 0.2),
+            new CountingStrategy(),
+            new RandomStrategy(0.6, 0.1),
+            new CountingStrategy());
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        long start = System.nanoTime();
+        Stats stats = sim.run(games, seed);
+        double secs = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%d games (seed %d) in %.2fs on %d cores: %.0f games/sec, %.0f games/sec/core%n",
+            stats.games, seed, secs, cores, stats.games / secs, stats.games / secs / cores);
+        for (int seat = 0; seat < sim.strategies.length; seat++) {
+            System.out.printf("  seat %d %-28s won %6.2f%%%n",
+                seat + 1, sim.strategies[seat], 100.0 * stats.wins[seat] / stats.games);
+        }
+        System.out.printf("  avg turns %.1f, bluffs called %d, caught %.1f%%, unfinished %d%n",
+            (double) stats.turns / stats.games, stats.bluffsCalled,
+            100.0 * stats.bluffsCaught / Math.max(1, stats.bluffsCalled), stats.unfinished);
+    }
+}
@@ -0,0 +1,258 @@
+package bluff;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.*;
+
+/**
+ * A plain blocking socket with its own reader and writer tasks. Used by
+ * the thread-per-connection mode, where those tasks are virtual threads.
+ * Senders only queue into the {@link Outbox}, so a client that stops
+ * reading blocks its own writer and nobody else.
+ */
+public class SocketConnection implements Connection {
+    private static final int NEGOTIATE_MS = 250;
+
+    private final Socket socket;
+    private final OutputStream out;
+    private final Outbox outbox = new Outbox();
+    private final DataInputStream in;
+    private volatile boolean closed = false;
+    private volatile boolean binary = false;
+    //when the client last sent anything, for the heartbeat
+    private volatile long lastHeard = System.nanoTime();
+    private ClientHandler handler;
+
+    public SocketConnection(Socket socket) throws IOException {
+        this.socket = socket;
+        Metrics.CONNECTIONS.increment();
+        out = new BufferedOutputStream(socket.getOutputStream());
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+    }
+
+    @Override
+    public void bind(ClientHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Starts reading and writing on the given executor until the socket closes.
+     */
+    public void start(ExecutorService executor) {
+        executor.execute(this::writeLoop);
+        if (HEARTBEAT_MS > 0) {
+            Table.TIMER.schedule(this::heartbeat, HEARTBEAT_MS, TimeUnit.MILLISECONDS);
+        }
+        executor.execute(() -> {
+            try {
+                //first byte decides the protocol; a text client may not send one for a while
+                in.mark(1);
+                int first;
+                socket.setSoTimeout(NEGOTIATE_MS);
+                try {
+                    first = in.read();
+                } catch (SocketTimeoutException e) {
+                    first = -2;
+                }
+                socket.setSoTimeout(0);
+
+                if (first == (Wire.MAGIC & 0xFF)) {
+                    synchronized (outbox) {
+                        binary = true;
+                        enqueue(new byte[] {Wire.MAGIC});
+                    }
+                    //a RESUME sent along with MAGIC is handled before the player would join the lobby
+                    if (in.available() > 0) {
+                        readFrame();
+                    }
+                    handler.ready();
+                    readFrames();
+                } else if (first != -1) {
+                    if (first >= 0) {
+                        in.reset();
+                    }
+                    readLines();
+                }
+            } catch (IOException e) {
+                //socket closed under us
+            } finally {
+                close();
+            }
+        });
+    }
+
+    private void readLines() throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        //same for a RESUME line that came with the first bytes
+        if (reader.ready() && (line = reader.readLine()) != null) {
+            handler.receive(line);
+        }
+        handler.ready();
+        while ((line = reader.readLine()) != null) {
+            handler.receive(line);
+        }
+    }
+
+    private void readFrames() throws IOException {
+        while (readFrame()) {
+        }
+    }
+
+    private boolean readFrame() throws IOException {
+        int len = in.readUnsignedShort();
+        if (len == 0) {
+            return false;
+        }
+        byte opcode = in.readByte();
+        byte[] payload = new byte[len - 1];
+        in.readFully(payload);
+        lastHeard = System.nanoTime();
+        handler.receiveFrame(opcode, payload);
+        return true;
+    }
+
+    //on the timer wheel: pings a quiet client, or lets it go once it has stopped answering
+    private void heartbeat() {
+        if (closed || !binary) {
+            //text clients can't answer pings, a turn deadline is all that times them out
+            return;
+        }
+        long silent = System.nanoTime() - lastHeard;
+        if (IDLE_MS > 0 && silent >= TimeUnit.MILLISECONDS.toNanos(IDLE_MS)) {
+            Metrics.IDLE_DISCONNECTS.increment();
+            close();
+            return;
+        }
+        if (silent >= TimeUnit.MILLISECONDS.toNanos(HEARTBEAT_MS)) {
+            sendFrame(Wire.frame(Wire.PING));
+        }
+        Table.TIMER.schedule(this::heartbeat, HEARTBEAT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void send(String line) {
+        if (closed) {
+            return;
+        }
+        synchronized (outbox) {
+            enqueue(binary ? Wire.text(line) : (line + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Override
+    public void sendFrame(byte[] frame) {
+        if (closed) {
+            return;
+        }
+        enqueue(frame);
+    }
+
+    @Override
+    public void announce(Announcement announcement) {
+        if (closed) {
+            return;
+        }
+        synchronized (outbox) {
+            queued(outbox.offer(announcement, binary ? Announcement.FRAME : Announcement.LINES));
+        }
+    }
+
+    @Override
+    public void sendHandDelta(int version, int before, int after) {
+        if (closed) {
+            return;
+        }
+        synchronized (outbox) {
+            ByteBuffer into = outbox.room(Wire.HAND_DELTA_BYTES);
+            if (into != null) {
+                Wire.putHandDelta(into, version, before, after);
+            }
+            queued(into != null);
+        }
+    }
+
+    @Override
+    public boolean isBinary() {
+        return binary;
+    }
+
+    private void enqueue(byte[] bytes) {
+        queued(outbox.offer(bytes));
+    }
+
+    //what to do about a message the outbox did or didn't take
+    private void queued(boolean fit) {
+        if (fit) {
+            return;
+        }
+
+        //client is not reading, don't let it hold anyone up
+        Metrics.SLOW_CONSUMERS.increment();
+        switch (Outbox.POLICY) {
+            case DROP -> { }
+            case DISCONNECT -> abort();
+            case ELIMINATE -> {
+                handler.slowConsumer();
+                abort();
+            }
+        }
+    }
+
+    private void writeLoop() {
+        byte[] scratch = new byte[4096];
+        try {
+            int pending;
+            //whatever piled up since the last write goes out with one flush
+            while ((pending = outbox.awaitAll()) > 0) {
+                ByteBuffer[] views = outbox.views();
+                for (int i = 0; i < pending; i++) {
+                    //direct buffers have no array to hand out, so through scratch
+                    ByteBuffer buf = views[i];
+                    while (buf.hasRemaining()) {
+                        int n = Math.min(scratch.length, buf.remaining());
+                        buf.get(scratch, 0, n);
+                        out.write(scratch, 0, n);
+                    }
+                }
+                out.flush();
+                outbox.consumed();
+            }
+        } catch (IOException | InterruptedException e) {
+            //client is gone
+        } finally {
+            abort();
+            outbox.discard();
+            Metrics.CONNECTIONS.decrement();
+        }
+    }
+
+    /**
+     * Closes once everything already queued has been written.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        outbox.close();
+        handler.disconnected(this);
+    }
+
+    /**
+     * Closes the socket now, dropping anything still queued.
+     */
+    private void abort() {
+        close();
+        try {
+            socket.close();
+        } catch (IOException e) {
+            //already gone
+        }
+    }
+}
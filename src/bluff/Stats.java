@@ -0,0 +1,399 @@
+package bluff;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Every named player's totals, kept across games and restarts in one
+ * memory-mapped file of fixed-width records, a player's record sitting
+ * at the offset of their player number. When a game ends its few numbers
+ * are added into each named seat's record in place, so nothing is ever
+ * worked out again from history. Names are looked up in a map built when
+ * the file is opened and the best {@link #TOP} players by wins are kept
+ * in memory, so a question about one player reads one record and the
+ * leaderboard reads {@link #TOP}.
+ *
+ * Written pages reach the disk whenever the OS gets to them: they
+ * survive the server being killed, not the machine losing power.
+ *
+ * Layout: a header [magic][record size][players][unused], then one
+ * record per player: [name, 16 bytes zero padded][games][wins]
+ * [eliminations][bluff calls][calls that caught a lie][times called on]
+ * [times caught lying] as i32s, [last game, epoch millis i64], padded to
+ * 64 bytes.
+ */
+public class Stats implements Closeable {
+    //-Dbluff.stats=<file> turns it on, e.g. stats/players.stats
+    public static final String FILE = System.getProperty("bluff.stats", "off");
+    //-Dbluff.leaderboardSize: how many players the leaderboard keeps
+    static final int TOP = Math.max(1, Integer.getInteger("bluff.leaderboardSize", 10));
+    static final int MAX_NAME = 16;
+
+    private static final int MAGIC = 0xB1057A75;
+    private static final int HEADER = 16;
+    private static final int RECORD = 64;
+    private static final int FIRST_CAPACITY = 1024;
+    //where each total sits in a record
+    private static final int GAMES = 16;
+    private static final int WINS = 20;
+    private static final int ELIMINATIONS = 24;
+    private static final int CALLS = 28;
+    private static final int CALLS_RIGHT = 32;
+    private static final int CALLED_ON = 36;
+    private static final int CAUGHT_LYING = 40;
+    private static final int LAST_GAME = 44;
+
+    //when -Dbluff.stats is not given or is off, nothing is kept
+    public static final Stats OFF = new Stats();
+
+    private final FileChannel channel;
+    private MappedByteBuffer file;
+    private int capacity;
+    private int count;
+    //lower-cased name -> player number
+    private final Map<String, Integer> ids = new HashMap<>();
+    //player numbers, most wins first, ties to the lower number
+    private final int[] top = new int[TOP];
+    private int topSize = 0;
+    private boolean closed = false;
+
+    /**
+     * What happened to each seat during one game, added to the players'
+     * records when it ends. Only touched by the table.
+     */
+    public static class Tally {
+        private final int[] eliminations;
+        private final int[] calls;
+        private final int[] callsRight;
+        private final int[] calledOn;
+        private final int[] caughtLying;
+
+        public Tally(int seats) {
+            eliminations = new int[seats];
+            calls = new int[seats];
+            callsRight = new int[seats];
+            calledOn = new int[seats];
+            caughtLying = new int[seats];
+        }
+
+        public void bluffCalled(int accuser, int mover, boolean wasLying) {
+            calls[accuser]++;
+            calledOn[mover]++;
+            if (wasLying) {
+                callsRight[accuser]++;
+                caughtLying[mover]++;
+                eliminations[mover]++;
+            } else {
+                eliminations[accuser]++;
+            }
+        }
+
+        public void eliminated(int seat) {
+            eliminations[seat]++;
+        }
+    }
+
+    private Stats() {
+        channel = null;
+        closed = true;
+    }
+
+    /**
+     * The store named by -Dbluff.stats, or {@link #OFF} if it is turned
+     * off or cannot be opened.
+     */
+    public static Stats open() {
+        if (FILE.isEmpty() || FILE.equals("off")) {
+            return OFF;
+        }
+        try {
+            return new Stats(Paths.get(FILE));
+        } catch (IOException e) {
+            //the game still works without it
+            System.err.println("Stats not opened: " + e.getMessage());
+            return OFF;
+        }
+    }
+
+    /**
+     * Opens the file, or starts a new one, and reads every record once to
+     * index the names and fill the leaderboard.
+     */
+    public Stats(Path path) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean fresh = channel.size() < HEADER;
+        if (!fresh) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            channel.read(header, 0);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != RECORD) {
+                channel.close();
+                throw new IOException(path + " is not a stats file");
+            }
+            count = header.getInt(8);
+        }
+        capacity = FIRST_CAPACITY;
+        while (capacity < count) {
+            capacity *= 2;
+        }
+        file = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + (long) capacity * RECORD);
+        if (fresh) {
+            file.putInt(0, MAGIC).putInt(4, RECORD).putInt(8, 0);
+        }
+        for (int id = 0; id < count; id++) {
+            ids.put(key(name(id)), id);
+            rank(id);
+        }
+        if (count > 0) {
+            System.out.println("Stats: " + count + " player(s) in " + path);
+        }
+    }
+
+    /**
+     * @return True for 1 to 16 letters, digits, _ or -
+     */
+    public static boolean validName(String name) {
+        if (name.isEmpty() || name.length() > MAX_NAME) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_' || c == '-')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds one finished game into the records of every named seat.
+     *
+     * @param names Each seat's player name, null for bots and anyone unnamed
+     */
+    public synchronized void gameEnded(String[] names, int winner, Tally tally) {
+        if (closed) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (int seat = 0; seat < names.length; seat++) {
+            if (names[seat] == null) {
+                continue;
+            }
+            int id = idFor(names[seat]);
+            if (id < 0) {
+                continue;
+            }
+            int at = offset(id);
+            add(at + GAMES, 1);
+            add(at + ELIMINATIONS, tally.eliminations[seat]);
+            add(at + CALLS, tally.calls[seat]);
+            add(at + CALLS_RIGHT, tally.callsRight[seat]);
+            add(at + CALLED_ON, tally.calledOn[seat]);
+            add(at + CAUGHT_LYING, tally.caughtLying[seat]);
+            file.putLong(at + LAST_GAME, now);
+            if (seat == winner) {
+                add(at + WINS, 1);
+                rank(id);
+            }
+        }
+    }
+
+    /**
+     * @return One player's totals, or null if nobody by that name has finished a game
+     */
+    public synchronized String describe(String name) {
+        Integer id = ids.get(key(name));
+        if (closed || id == null) {
+            return null;
+        }
+        int at = offset(id);
+        int calls = file.getInt(at + CALLS);
+        int right = file.getInt(at + CALLS_RIGHT);
+        return name(id) + ": " + file.getInt(at + GAMES) + " games, " + file.getInt(at + WINS) + " wins, "
+            + file.getInt(at + ELIMINATIONS) + " eliminations, " + right + " of " + calls + " bluff calls right"
+            + (calls > 0 ? " (" + 100 * right / calls + "%)" : "") + ", caught lying "
+            + file.getInt(at + CAUGHT_LYING) + " of " + file.getInt(at + CALLED_ON) + " times called";
+    }
+
+    /**
+     * @return The leaderboard, best first, one line per player
+     */
+    public synchronized List<String> leaderboard() {
+        List<String> lines = new ArrayList<>(topSize);
+        for (int i = 0; i < topSize; i++) {
+            int at = offset(top[i]);
+            lines.add((i + 1) + ". " + name(top[i]) + ": " + file.getInt(at + WINS) + " wins in "
+                + file.getInt(at + GAMES) + " games");
+        }
+        return lines;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        file.force();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            //the pages are already written
+        }
+    }
+
+    //the player's number, taking the next free record for a new name; -1 if the file can't grow
+    private int idFor(String name) {
+        Integer id = ids.get(key(name));
+        if (id != null) {
+            return id;
+        }
+        if (count == capacity && !grow()) {
+            return -1;
+        }
+        int at = offset(count);
+        byte[] bytes = name.getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < MAX_NAME; i++) {
+            file.put(at + i, i < bytes.length ? bytes[i] : 0);
+        }
+        ids.put(key(name), count);
+        //counted last, so a record cut short by a crash is never read
+        file.putInt(8, count + 1);
+        return count++;
+    }
+
+    private boolean grow() {
+        try {
+            //a bigger mapping of the same file; the old one goes once nothing refers to it
+            file = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + (long) capacity * 2 * RECORD);
+            capacity *= 2;
+            return true;
+        } catch (IOException e) {
+            System.err.println("Stats: cannot grow the file, new players are not kept: " + e.getMessage());
+            return false;
+        }
+    }
+
+    //moves a player whose wins just went up to their place on the board; no one else's place changes
+    private void rank(int id) {
+        if (file.getInt(offset(id) + WINS) == 0) {
+            return;
+        }
+        int i = 0;
+        while (i < topSize && top[i] != id) {
+            i++;
+        }
+        if (i == topSize) {
+            if (topSize < top.length) {
+                topSize++;
+            } else if (!ahead(id, top[topSize - 1])) {
+                return;
+            } else {
+                //the last one drops off
+                i = topSize - 1;
+            }
+        }
+        while (i > 0 && ahead(id, top[i - 1])) {
+            top[i] = top[i - 1];
+            i--;
+        }
+        top[i] = id;
+    }
+
+    private boolean ahead(int a, int b) {
+        int winsA = file.getInt(offset(a) + WINS);
+        int winsB = file.getInt(offset(b) + WINS);
+        return winsA > winsB || (winsA == winsB && a < b);
+    }
+
+    private void add(int at, int amount) {
+        if (amount != 0) {
+            file.putInt(at, file.getInt(at) + amount);
+        }
+    }
+
+    private String name(int id) {
+        int at = offset(id);
+        int length = 0;
+        while (length < MAX_NAME && file.get(at + length) != 0) {
+            length++;
+        }
+        byte[] bytes = new byte[length];
+        file.get(at, bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    //names are told apart ignoring case
+    static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    private static int offset(int id) {
+        return HEADER + id * RECORD;
+    }
+
+    /**
+     * Simple test of the Stats class: records games for more players than
+     * the file first has room for, then reopens it and checks that every
+     * total and the leaderboard come back as they were.
+     */
+    public static void main(String[] args) throws IOException {
+        Path dir = Files.createTempDirectory("bluff-stats");
+        Path path = dir.resolve("players.stats");
+        int players = FIRST_CAPACITY + 100;
+        int[] wins = new int[players];
+        Stats stats = new Stats(path);
+        for (int id = 0; id < players; id++) {
+            String[] names = {"p" + id, null};
+            wins[id] = id * 7 % 23;
+            for (int game = 0; game < wins[id]; game++) {
+                stats.gameEnded(names, 0, new Tally(2));
+            }
+            //and one lost to a bot, calling a bluff wrongly
+            Tally lost = new Tally(2);
+            lost.bluffCalled(0, 1, false);
+            stats.gameEnded(names, 1, lost);
+        }
+        List<String> board = stats.leaderboard();
+        String someone = stats.describe("p500");
+        stats.close();
+
+        //most wins first, ties to whoever played first
+        Integer[] best = new Integer[players];
+        for (int id = 0; id < players; id++) {
+            best[id] = id;
+        }
+        Arrays.sort(best, (a, b) -> wins[a] != wins[b] ? wins[b] - wins[a] : a - b);
+        List<String> expected = new ArrayList<>();
+        for (int place = 0; place < TOP; place++) {
+            int id = best[place];
+            expected.add((place + 1) + ". p" + id + ": " + wins[id] + " wins in " + (wins[id] + 1) + " games");
+        }
+        check(board.equals(expected), "the leaderboard has the most wins first");
+
+        stats = new Stats(path);
+        check(stats.leaderboard().equals(board), "the leaderboard is rebuilt when the file is reopened");
+        check(someone.equals(stats.describe("P500")), "a player's totals come back, whatever the case of the name");
+        check(someone.equals("p500: " + (wins[500] + 1) + " games, " + wins[500] + " wins, 1 eliminations, 0 of 1 bluff calls right (0%), caught lying 0 of 0 times called"),
+            "a player's totals add up");
+        check(stats.describe("nobody") == null, "a name never seen has no totals");
+        stats.close();
+
+        Files.delete(path);
+        Files.delete(dir);
+        System.out.println("Stats checks passed");
+    }
+
+    private static void check(boolean ok, String what) {
+        if (!ok) {
+            throw new IllegalStateException("Stats check failed: " + what);
+        }
+        System.out.println("ok: " + what);
+    }
+}
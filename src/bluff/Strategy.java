@@ -0,0 +1,55 @@
+package bluff;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * How a bot plays: what to put down on its turn and whether to call bluff
+ * on someone else's move. Strategies are shared between threads, so they
+ * keep no state of their own and draw any randomness from
+ * {@link BluffGame#random()}.
+ *
+ * A strategy may look at its own hand and at public information only
+ * (round card, hand sizes, {@link BluffGame#lastCount()}), never at
+ * {@link BluffGame#lastPlayed()}.
+ */
+public interface Strategy {
+    /**
+     * @return The move, packed with {@link #move(int, int)}
+     */
+    int chooseMove(BluffGame game, int seat);
+
+    /**
+     * @return True to call bluff on the move that was just made
+     */
+    boolean callBluff(BluffGame game, int seat);
+
+    /**
+     * {@link #callBluff} without holding up the caller, for a table where
+     * people can call at the same time. The game is only read before this
+     * returns, so the caller may change it as soon as it has the future.
+     */
+    default CompletableFuture<Boolean> callBluffLater(BluffGame game, int seat) {
+        return CompletableFuture.completedFuture(callBluff(game, seat));
+    }
+
+    /**
+     * {@link #chooseMove} without holding up the caller, for a table that
+     * keeps serving everyone else meanwhile. The game is left alone until
+     * the future completes.
+     */
+    default CompletableFuture<Integer> chooseMoveLater(BluffGame game, int seat) {
+        return CompletableFuture.completedFuture(chooseMove(game, seat));
+    }
+
+    static int move(int actual, int fake) {
+        return (actual << 8) | fake;
+    }
+
+    static int actual(int move) {
+        return move >>> 8;
+    }
+
+    static int fake(int move) {
+        return move & 0xFF;
+    }
+}
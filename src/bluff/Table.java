@@ -0,0 +1,697 @@
+package bluff;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+/**
+ * One game of Bluff. Every table keeps its own players and last move so
+ * the server can run many of them at once.
+ *
+ * A table never waits on anything. It is a state machine (see
+ * {@link Phase}) that moves on only when it is told something: a move, a
+ * BLUFF call, a bot's answer, a timer running out. Those come in as
+ * {@link Command}s from any thread and are handled one at a time on a
+ * few table threads shared by every table, so a thousand tables waiting
+ * for their players hold no threads at all.
+ */
+public class Table implements Runnable {
+    static final long BLUFF_WINDOW_MS = Long.getLong("bluff.windowMs", 5000);
+    //-Dbluff.turnMs: how long a player has to make their move before they lose their seat, 0 forever
+    static final long TURN_MS = Long.getLong("bluff.turnMs", 60000);
+    //-Dbluff.seed makes every table's deals reproducible: table N of a run always gets the same seed
+    private static final Long SEED = Long.getLong("bluff.seed");
+    //one timer wheel for every table and connection: turn deadlines, bluff windows, reconnects, heartbeats
+    //-Dbluff.timerTickMs: how late a timeout may fire
+    static final TimerWheel TIMER = new TimerWheel("bluff-timer", Long.getLong("bluff.timerTickMs", 5), 4096);
+    //-Dbluff.tableThreads: threads stepping every table, one per core unless told otherwise
+    private static final ExecutorService STEPPER = Executors.newFixedThreadPool(
+        Math.max(1, Integer.getInteger("bluff.tableThreads", Runtime.getRuntime().availableProcessors())), r -> {
+            Thread t = new Thread(r, "bluff-table");
+            t.setDaemon(true);
+            return t;
+        });
+    //commands handled in one go before other tables get the thread
+    private static final int STEP_BATCH = 64;
+    //said every round or every turn, encoded once for every table
+    private static final Announcement DECK = Announcement.constant(
+        "There are 6 Aces, 6 Queens, 6 Kings, 2 Jacks, distributed amongst you.");
+    private static final Announcement JACKS = Announcement.constant("Jacks can disguise as any card. Find who's lying.");
+    private static final Announcement WINDOW_OPEN = Announcement.constant("Anyone can type 'BLUFF' to call a bluff!");
+    private static final Announcement NO_CALL = Announcement.constant("No one called bluff. Round continues.");
+    private static final Announcement INVALID_INPUT = Announcement.constant("Invalid input. Try again.");
+    private static final Announcement INVALID_MOVE = Announcement.constant("Invalid move! Try again.");
+    private static final Announcement OUT_OF_TIME = Announcement.constant("Out of time! You have lost your seat.");
+
+    /**
+     * Where a game is. Everything else the table remembers only makes
+     * sense in one of these.
+     */
+    enum Phase {
+        //between rounds: shuffling, dealing, saying who starts
+        DEALING,
+        //the current player owes a move
+        AWAITING_MOVE,
+        //a move was made and anyone may call BLUFF on it
+        BLUFF_WINDOW,
+        //the window closed, working out what happens next
+        RESOLVING,
+        GAME_OVER
+    }
+
+    private final int tableID;
+    private final List<ClientHandler> seated;
+    //players still in the game, in seat order
+    private final List<ClientHandler> players;
+    //the rules live here, the table only does the talking
+    private final BluffGame game;
+    //what the game's generator was seeded with, logged so a table can be replayed
+    private final long seed;
+    private final Journal journal;
+    private final Stats stats;
+    //what happened to each seat this game, for the stats when it ends
+    private final Stats.Tally tally;
+    //each seat's player name as the game started, null for bots and anyone unnamed
+    private final String[] names;
+    //picked up from the journal partway through a round, so the first one is not dealt
+    private final boolean resumed;
+    //commands waiting to be handled, and whether a table thread is on them already
+    private final Command.Queue commands = new Command.Queue();
+    private final AtomicBoolean stepping = new AtomicBoolean();
+    private final CompletableFuture<Void> finished = new CompletableFuture<>();
+    //from here down, only touched while stepping
+    private Phase phase = Phase.DEALING;
+    //counts every wait for a move or a BLUFF, so an answer to an earlier one is ignored
+    private int stage = 0;
+    private int roundCard;
+    private long turnStart;
+    private long windowOpened;
+    //turn deadline or bluff window, whichever is running
+    private TimerWheel.Timeout deadline;
+    //stage of the bluff window that's open, or -1; read by the I/O threads to stamp BLUFF calls
+    private volatile int openWindow = -1;
+    //round card and player number of the last turn announced, packed as one, or -1; read by the I/O threads for new spectators
+    private volatile int onShow = -1;
+    //spectators, fed off the turn loop
+    private final Gallery gallery = new Gallery();
+
+    public Table(int tableID, List<ClientHandler> players, Journal journal, Stats stats) {
+        this(tableID, players, seedFor(tableID), journal, stats);
+    }
+
+    private Table(int tableID, List<ClientHandler> players, long seed, Journal journal, Stats stats) {
+        this(tableID, players, new BluffGame(hands(players), new SplittableRandom(seed)), journal, stats, false, seed);
+    }
+
+    /**
+     * A game the last run never finished, rebuilt from the journal. The
+     * players are stand-ins holding the seats until their owners resume.
+     */
+    public Table(int tableID, List<ClientHandler> players, BluffGame game, Journal journal, Stats stats) {
+        this(tableID, players, game, journal, stats, true, 0);
+    }
+
+    private Table(int tableID, List<ClientHandler> players, BluffGame game, Journal journal, Stats stats, boolean resumed, long seed) {
+        this.tableID = tableID;
+        this.journal = journal;
+        this.stats = stats;
+        this.tally = new Stats.Tally(players.size());
+        this.names = new String[players.size()];
+        this.resumed = resumed;
+        this.seed = seed;
+        this.seated = new ArrayList<>(players);
+        this.players = new CopyOnWriteArrayList<>();
+        for (int seat = 0; seat < players.size(); seat++) {
+            if (game.isAlive(seat)) {
+                this.players.add(players.get(seat));
+            }
+        }
+        this.game = game;
+    }
+
+    //each table deals from its own generator, so busy tables never wait on a shared one
+    private static long seedFor(int tableID) {
+        return SEED != null ? Cards.seed(SEED, tableID) : ThreadLocalRandom.current().nextLong();
+    }
+
+    //false if the journal ended before the first deal
+    private boolean dealt() {
+        for (int seat = 0; seat < game.seats(); seat++) {
+            if (!game.hand(seat).isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Hand[] hands(List<ClientHandler> players) {
+        Hand[] hands = new Hand[players.size()];
+        for (int i = 0; i < hands.length; i++) {
+            hands[i] = players.get(i).hand;
+        }
+        return hands;
+    }
+
+    public int getTableID() {
+        return tableID;
+    }
+
+    public Gallery getGallery() {
+        return gallery;
+    }
+
+    /**
+     * Plays the whole game and returns once it is over, for a caller that
+     * wants to wait on it. The server itself only calls {@link #start} and
+     * watches {@link #finished}.
+     */
+    @Override
+    public void run() {
+        start();
+        finished.join();
+    }
+
+    /**
+     * Starts the game without waiting for it.
+     */
+    public void start() {
+        post(Command.of(Command.START, 0, 0, 0));
+    }
+
+    /**
+     * @return Completes once the game is over and everyone has been let go
+     */
+    public CompletableFuture<Void> finished() {
+        return finished;
+    }
+
+    /**
+     * Called from the I/O threads with a move a player sent, parsed with
+     * {@link Command#parseMove}. Only counts if it is their turn.
+     */
+    public void move(ClientHandler player, int move) {
+        post(Command.of(Command.MOVE, seatOf(player), move, 0));
+    }
+
+    /**
+     * A player is gone for good, e.g. they never came back in time. If it
+     * is their turn their seat goes now, otherwise when their turn comes.
+     */
+    public void left(ClientHandler player) {
+        post(Command.of(Command.LEFT, seatOf(player), 0, 0));
+    }
+
+    //anyone with something to tell the table; whoever finds it idle gets it stepped
+    private void post(long command) {
+        commands.add(command);
+        if (stepping.compareAndSet(false, true)) {
+            STEPPER.execute(this::step);
+        }
+    }
+
+    //handles what has been posted, a batch at a time so one busy table can't keep the others waiting
+    private void step() {
+        for (int i = 0; i < STEP_BATCH; i++) {
+            long command = commands.poll();
+            if (command == 0) {
+                break;
+            }
+            try {
+                handle(command);
+            } catch (RuntimeException e) {
+                System.err.println("Table " + tableID + " failed: " + e);
+                finish();
+            }
+        }
+        stepping.set(false);
+        //something posted after the last poll but before the flag dropped is ours to handle too
+        if (!commands.isEmpty() && stepping.compareAndSet(false, true)) {
+            STEPPER.execute(this::step);
+        }
+    }
+
+    private void handle(long command) {
+        if (phase == Phase.GAME_OVER) {
+            return;
+        }
+        int seat = Command.seat(command);
+        //an answer to what the table is waiting for right now, not to something before it
+        boolean current = Command.stage(command) == stage;
+        switch (Command.kind(command)) {
+            case Command.START -> begin();
+            case Command.MOVE -> {
+                ClientHandler player = seated.get(seat);
+                if (phase == Phase.AWAITING_MOVE && seat == game.turn() && player.getBot() == null) {
+                    playerMove(player, Command.move(command));
+                }
+            }
+            case Command.BOT_MOVE -> {
+                if (phase == Phase.AWAITING_MOVE && current) {
+                    botMove(seated.get(game.turn()), Command.move(command));
+                }
+            }
+            case Command.BLUFF -> {
+                if (phase == Phase.BLUFF_WINDOW && current && players.contains(seated.get(seat))) {
+                    closeBluffWindow(seated.get(seat));
+                }
+            }
+            case Command.WINDOW_CLOSED -> {
+                if (phase == Phase.BLUFF_WINDOW && current) {
+                    closeBluffWindow(null);
+                }
+            }
+            case Command.OUT_OF_TIME -> {
+                if (phase == Phase.AWAITING_MOVE && current) {
+                    ClientHandler player = seated.get(game.turn());
+                    Metrics.TURN_TIMEOUTS.increment();
+                    player.announce(OUT_OF_TIME);
+                    playerLeft(player);
+                }
+            }
+            case Command.CATCH_UP -> sendCatchUp(seated.get(seat));
+            case Command.HINT -> sendHint(seated.get(seat));
+            case Command.LEFT -> {
+                ClientHandler player = seated.get(seat);
+                if (phase == Phase.AWAITING_MOVE && seat == game.turn() && player.isGone()) {
+                    System.out.println("Player connection disconnected");
+                    playerLeft(player);
+                }
+            }
+            default -> {
+                //nothing else is ever posted
+            }
+        }
+    }
+
+    private void begin() {
+        //give everyone their seat
+        for (int i = 0; i < seated.size(); i++) {
+            seated.get(i).seat(this, i + 1);
+            names[i] = seated.get(i).getName();
+        }
+        Metrics.TABLES.increment();
+        if (resumed) {
+            System.out.println("Table " + tableID + ": resuming game, waiting for players to reconnect");
+        } else {
+            System.out.println("Table " + tableID + ": starting game! (seed " + seed + ")");
+            long[] tokens = new long[seated.size()];
+            for (int i = 0; i < tokens.length; i++) {
+                tokens[i] = seated.get(i).getToken();
+            }
+            journal.tableStarted(tableID, tokens);
+        }
+        if (resumed && !game.isOver() && dealt()) {
+            //pick up where the round was, a move already made still gets its bluff window
+            roundCard = game.roundCard();
+            nextTurn(game.lastSeat() == game.turn());
+        } else {
+            nextRound();
+        }
+    }
+
+    //deals the next round, or ends the game once it has a winner
+    private void nextRound() {
+        if (game.isOver()) {
+            gameOver();
+            return;
+        }
+        phase = Phase.DEALING;
+        //shuffle, deal and pick who starts
+        roundCard = game.startRound();
+        journal.dealt(tableID, game);
+        tell(ClientHandler::sendHand);
+
+        //info
+        System.out.println("Table " + tableID + ": new round: " + Cards.name(roundCard) + "s");
+        announce(Announcement.round(roundCard));
+        announce(DECK);
+        announce(JACKS);
+        nextTurn(false);
+    }
+
+    //starts the current player's turn; moved means they already moved
+    private void nextTurn(boolean moved) {
+        //anyone who stopped reading is out, and the round starts over like after a bluff
+        if (removeSlowPlayers()) {
+            nextRound();
+            return;
+        }
+        turnStart = System.nanoTime();
+        ClientHandler player = seated.get(game.turn());
+        announce(Announcement.turn(player.getPlayerID()));
+        onShow = roundCard << 8 | player.getPlayerID();
+        if (moved) {
+            openBluffWindow();
+        } else {
+            askForMove(player);
+        }
+    }
+
+    //people are asked over their connection, bots think it over off the table's thread
+    private void askForMove(ClientHandler player) {
+        phase = Phase.AWAITING_MOVE;
+        int asked = ++stage;
+        Strategy bot = player.getBot();
+        if (bot != null) {
+            int seat = seatOf(player);
+            bot.chooseMoveLater(game, seat).whenComplete((move, e) ->
+                //a bot that failed to decide gets the fallback in botMove
+                post(Command.of(Command.BOT_MOVE, seat, e == null ? move : Command.INVALID, asked)));
+            return;
+        }
+        if (player.isGone()) {
+            //gave up their seat before their turn came, e.g. never came back in time
+            playerLeft(player);
+            return;
+        }
+        player.promptMove(roundCard);
+        if (TURN_MS > 0) {
+            deadline = TIMER.schedule(() -> post(Command.of(Command.OUT_OF_TIME, 0, 0, asked)), TURN_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void playerMove(ClientHandler player, int move) {
+        if (move == Command.INVALID) {
+            //ask them to resend cards
+            player.announce(INVALID_INPUT);
+            player.promptMove(roundCard);
+        } else if (!processMove(player, Strategy.actual(move), Strategy.fake(move))) {
+            //the hand is left as it was, same turn, same deadline
+            player.announce(INVALID_MOVE);
+            player.promptMove(roundCard);
+        }
+    }
+
+    private void botMove(ClientHandler player, int move) {
+        int actual = Strategy.actual(move);
+        int fake = Strategy.fake(move);
+        Hand hand = game.hand(seatOf(player));
+        if (move == Command.INVALID || actual > hand.count(roundCard) || fake > hand.size() - hand.count(roundCard)) {
+            //asked for something it doesn't hold, put down any one card
+            boolean hasReal = hand.count(roundCard) > 0;
+            actual = hasReal ? 1 : 0;
+            fake = hasReal ? 0 : 1;
+        }
+        processMove(player, actual, fake);
+    }
+
+    //someone else at the table is a person, so the game is still worth playing on
+    private boolean humansBesides(ClientHandler leaving) {
+        for (ClientHandler player : players) {
+            if (player != leaving && player.getBot() == null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //a player gave up their seat on their turn: a bot plays on for them, or the round is dealt again without them
+    private void playerLeft(ClientHandler player) {
+        cancelDeadline();
+        ClientHandler bot = humansBesides(player) ? player.botInstead() : null;
+        if (bot != null) {
+            //a bot plays their cards from here, the round carries on
+            takeOver(player, bot);
+            nextTurn(false);
+            return;
+        }
+        //they left, deal again without them
+        game.remove(seatOf(player));
+        journal.removed(tableID, seatOf(player));
+        tally.eliminated(seatOf(player));
+        players.remove(player);
+        player.close();
+        nextRound();
+    }
+
+    //the bot takes the seat, hand and player number of someone who left
+    private void takeOver(ClientHandler player, ClientHandler bot) {
+        int seat = seatOf(player);
+        journal.takenOver(tableID, seat);
+        bot.seat(this, player.getPlayerID());
+        seated.set(seat, bot);
+        players.set(players.indexOf(player), bot);
+        player.close();
+        broadcast("Player " + player.getPlayerID() + " left, a bot is playing their cards.");
+    }
+
+    /**
+     * Plays the move if the hand covers it, and opens the bluff window on it.
+     *
+     * @return False if it was not a move the hand could make
+     */
+    private boolean processMove(ClientHandler player, int declaredCount, int fakeCount) {
+        if (declaredCount < 0 || fakeCount < 0 || game.play(declaredCount, fakeCount) < 0) {
+            return false;
+        }
+        cancelDeadline();
+        journal.moved(tableID, declaredCount, fakeCount);
+
+        //adjusts player's hand
+        player.sendHand();
+
+        //information
+        int cardsLeft = player.hand.size();
+        int id = player.getPlayerID();
+        int count = declaredCount + fakeCount;
+        announce(Announcement.move(id, count, roundCard, cardsLeft));
+        openBluffWindow();
+        return true;
+    }
+
+    private void openBluffWindow() {
+        phase = Phase.BLUFF_WINDOW;
+        int window = ++stage;
+        //arm the window before telling anyone, so an early BLUFF still counts
+        windowOpened = System.nanoTime();
+        deadline = TIMER.schedule(() -> post(Command.of(Command.WINDOW_CLOSED, 0, 0, window)), BLUFF_WINDOW_MS, TimeUnit.MILLISECONDS);
+        openWindow = window;
+        announce(WINDOW_OPEN);
+        askBots(window);
+    }
+
+    //the first BLUFF or the deadline, whichever came first
+    private void closeBluffWindow(ClientHandler accuser) {
+        phase = Phase.RESOLVING;
+        openWindow = -1;
+        cancelDeadline();
+        Metrics.BLUFF_WINDOW.recordNanos(System.nanoTime() - windowOpened);
+
+        if (accuser != null) {
+            resolveBluff(accuser);
+            Metrics.TURN.recordNanos(System.nanoTime() - turnStart);
+            nextRound();
+            return;
+        }
+        announce(NO_CALL);
+        Metrics.TURN.recordNanos(System.nanoTime() - turnStart);
+
+        //if player's hand is empty, they win since no one can call bluff on them anymore and they cant play cards
+        journal.passed(tableID);
+        if (game.endTurn()) {
+            nextRound();
+        } else {
+            nextTurn(false);
+        }
+    }
+
+    private void cancelDeadline() {
+        if (deadline != null) {
+            deadline.cancel();
+            deadline = null;
+        }
+    }
+
+    /**
+     * Called from the I/O threads when a player sends BLUFF. Only the first
+     * call in a window wins; everything after it is ignored.
+     */
+    public void callBluff(ClientHandler accuser) {
+        int window = openWindow;
+        if (window >= 0) {
+            post(Command.of(Command.BLUFF, seatOf(accuser), 0, window));
+        }
+    }
+
+    /**
+     * Lets every bot but the mover think about calling while the window is
+     * open, racing the people like anyone else. With nobody but bots left
+     * to call, the window closes as soon as they have all answered.
+     */
+    private void askBots(int window) {
+        List<CompletableFuture<Void>> answers = new ArrayList<>();
+        boolean humans = false;
+        for (ClientHandler player : players) {
+            Strategy bot = player.getBot();
+            int seat = seatOf(player);
+            if (bot == null) {
+                humans |= seat != game.lastSeat();
+            } else if (seat != game.lastSeat()) {
+                //a bot that answers late only counts toward the window it was asked in
+                answers.add(bot.callBluffLater(game, seat).thenAccept(call -> {
+                    if (call) {
+                        post(Command.of(Command.BLUFF, seat, 0, window));
+                    }
+                }));
+            }
+        }
+        if (!humans) {
+            CompletableFuture.allOf(answers.toArray(new CompletableFuture<?>[0]))
+                .thenRun(() -> post(Command.of(Command.WINDOW_CLOSED, 0, 0, window)));
+        }
+    }
+
+    private void gameOver() {
+        if (game.winner() != BluffGame.NO_ONE) {
+            ClientHandler winner = seated.get(game.winner());
+            if (game.winnerEmptiedHand()) {
+                //winner being player who emptied their hand
+                broadcast("Player " + winner.getPlayerID() + " emptied their hand and has won!");
+            }
+            broadcast("Game Over! Winner: Player " + winner.getPlayerID());
+        }
+        stats.gameEnded(names, game.winner(), tally);
+        finish();
+    }
+
+    //lets everyone go, even if the table failed
+    private void finish() {
+        if (phase == Phase.GAME_OVER) {
+            return;
+        }
+        phase = Phase.GAME_OVER;
+        openWindow = -1;
+        cancelDeadline();
+        //written even if the table died, so recovery doesn't bring back a game nobody can finish
+        journal.ended(tableID, game.winner());
+        for (ClientHandler player : seated) {
+            player.close();
+        }
+        gallery.close();
+        Metrics.TABLES.decrement();
+        System.out.println("Table " + tableID + ": game over.");
+        finished.complete(null);
+    }
+
+    private void resolveBluff(ClientHandler accuser) {
+        //the game checks the last move and tells us who is out
+        ClientHandler lastPlayer = seated.get(game.lastSeat());
+        ClientHandler out = seated.get(game.callBluff(seatOf(accuser)));
+        journal.bluffCalled(tableID, seatOf(accuser));
+        boolean wasLying = out == lastPlayer;
+        tally.bluffCalled(seatOf(accuser), seatOf(lastPlayer), wasLying);
+        Metrics.BLUFF_CALLS.increment();
+        if (wasLying) {
+            Metrics.BLUFFS_CAUGHT.increment();
+        }
+
+        int accuserID = accuser.getPlayerID();
+        int accusedID = lastPlayer.getPlayerID();
+        announce(Announcement.bluff(accuserID, accusedID, wasLying));
+        eliminate(out);
+    }
+
+    /**
+     * Called from the I/O thread when a player reconnects. What they need
+     * to carry on is sent from the table's thread, so it all comes from
+     * one moment of the game.
+     */
+    public void catchUp(ClientHandler player) {
+        post(Command.of(Command.CATCH_UP, seatOf(player), 0, 0));
+    }
+
+    //everything a reconnected player needs to carry on, without replaying what they missed
+    private void sendCatchUp(ClientHandler player) {
+        player.sendMessage("You are Player " + player.getPlayerID());
+        player.sendRoundStart(game.roundCard());
+        player.sendWholeHand();
+        player.sendTurn(game.turn() + 1);
+        if (phase == Phase.AWAITING_MOVE && seatOf(player) == game.turn() && player.getBot() == null) {
+            //they still owe a move, same deadline as before
+            player.promptMove(roundCard);
+        }
+    }
+
+    /**
+     * Called from the I/O thread when a player asks how likely the last
+     * move was a lie. Answered from the table's thread, like a catch-up.
+     */
+    public void hint(ClientHandler player) {
+        post(Command.of(Command.HINT, seatOf(player), 0, 0));
+    }
+
+    private void sendHint(ClientHandler player) {
+        int mover = game.lastSeat();
+        double chance = BluffOracle.lieChance(game, seatOf(player));
+        if (chance < 0) {
+            player.sendMessage("Hint: there is no move of someone else's to judge right now.");
+            return;
+        }
+        player.sendMessage(Wire.hintText(mover + 1, game.lastCount(), game.roundCard(), chance));
+    }
+
+    /**
+     * Called from the I/O thread for a new spectator, before they join the
+     * gallery: the round and whose turn it is, so the events that follow
+     * make sense.
+     */
+    public void catchUpWatcher(Connection watcher) {
+        //one read, so the round and the turn always go together
+        int shown = onShow;
+        watcher.send("Watching table " + tableID + " (" + gallery.size() + " watching)");
+        if (shown >= 0) {
+            watcher.announce(Announcement.round(shown >>> 8));
+            watcher.announce(Announcement.turn(shown & 0xFF));
+        }
+    }
+
+    private boolean removeSlowPlayers() {
+        boolean removed = false;
+        //backwards, since eliminate() takes them out of players
+        for (int i = players.size() - 1; i >= 0; i--) {
+            ClientHandler player = players.get(i);
+            if (player.isTooSlow()) {
+                game.remove(seatOf(player));
+                journal.removed(tableID, seatOf(player));
+                tally.eliminated(seatOf(player));
+                eliminate(player);
+                broadcast("Player " + player.getPlayerID() + " stopped responding and is eliminated!");
+                removed = true;
+            }
+        }
+        return removed;
+    }
+
+    private int seatOf(ClientHandler player) {
+        return player.getPlayerID() - 1;
+    }
+
+    private void eliminate(ClientHandler player) {
+        players.remove(player);
+        player.sendEliminated();
+        //they get no more messages, so let their connection go now
+        player.close();
+    }
+
+    public void broadcast(String message) {
+        //send a message to all of the players
+        announce(Announcement.text(message));
+    }
+
+    //a public event: encoded once, queued for every player, and handed to the watchers' fan-out
+    private void announce(Announcement announcement) {
+        tell(p -> p.announce(announcement));
+        gallery.post(announcement);
+    }
+
+    //sends something to everyone still in, timing the fan-out
+    private void tell(Consumer<ClientHandler> message) {
+        long start = System.nanoTime();
+        //by index, so a broadcast makes no iterator; players only changes on this thread
+        for (int i = 0; i < players.size(); i++) {
+            message.accept(players.get(i));
+        }
+        Metrics.BROADCAST.recordNanos(System.nanoTime() - start);
+    }
+}
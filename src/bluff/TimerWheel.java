@@ -0,0 +1,263 @@
+package bluff;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A hashed timer wheel: one thread and a ring of buckets, each bucket a
+ * linked list of the timeouts due on ticks that land on it. Arming and
+ * cancelling are O(1) from any thread; they only go on a queue for the
+ * wheel thread to link in or unlink at its next tick. Each tick looks at
+ * one bucket, so however many timeouts are waiting, a tick only touches
+ * the few that land on it. With nothing armed at all the thread sleeps
+ * until something is.
+ *
+ * Timeouts fire on the wheel thread, never early and at most about a tick
+ * late. Tasks must be quick, like completing a future or queueing a
+ * message; anything longer belongs on another thread.
+ */
+public final class TimerWheel implements Runnable {
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final long start = System.nanoTime();
+    private final Thread thread;
+    //handed over by other threads, linked in or unlinked at the next tick
+    private final Queue<Timeout> armed = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    //wheel thread only
+    private long tick = 0;
+    private int linked = 0;
+    private volatile boolean sleeping = false;
+
+    /**
+     * One armed task, for cancelling it.
+     */
+    public static final class Timeout {
+        private final TimerWheel wheel;
+        private final Runnable task;
+        private final long deadlineTick;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        //wheel thread only
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(TimerWheel wheel, Runnable task, long deadlineTick) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+
+        /**
+         * @return False if it already fired or was cancelled
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(PENDING, CANCELLED)) {
+                return false;
+            }
+            Metrics.TIMEOUTS.decrement();
+            //unlinked at the next tick rather than holding its bucket until its deadline comes round
+            wheel.cancelled.add(this);
+            return true;
+        }
+    }
+
+    private static final class Bucket {
+        Timeout head;
+
+        void add(Timeout t) {
+            t.bucket = this;
+            t.next = head;
+            if (head != null) {
+                head.prev = t;
+            }
+            head = t;
+        }
+
+        void remove(Timeout t) {
+            if (t.prev != null) {
+                t.prev.next = t.next;
+            } else {
+                head = t.next;
+            }
+            if (t.next != null) {
+                t.next.prev = t.prev;
+            }
+            t.bucket = null;
+            t.prev = null;
+            t.next = null;
+        }
+    }
+
+    /**
+     * @param name The wheel thread's name
+     * @param tickMillis How often the wheel turns, the most a timeout fires late
+     * @param buckets Slots round the wheel, rounded up to a power of two; a wheel
+     *                covering the usual delays in one turn checks each timeout only once
+     */
+    public TimerWheel(String name, long tickMillis, int buckets) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMillis));
+        int size = Integer.highestOneBit(Math.max(1, buckets) * 2 - 1);
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.thread = new Thread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Runs a task on the wheel thread once the delay is up.
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        long due = System.nanoTime() - start + unit.toNanos(Math.max(0, delay));
+        //rounded up, so it never fires early
+        Timeout timeout = new Timeout(this, task, (due + tickNanos - 1) / tickNanos);
+        Metrics.TIMEOUTS.increment();
+        armed.add(timeout);
+        if (sleeping) {
+            LockSupport.unpark(thread);
+        }
+        return timeout;
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            if (linked == 0 && armed.isEmpty() && cancelled.isEmpty()) {
+                sleeping = true;
+                //checked again after saying so, so an arm in between either sees the flag or is seen here
+                if (armed.isEmpty()) {
+                    LockSupport.park(this);
+                }
+                sleeping = false;
+                //every bucket is empty, so the ticks slept through had nothing in them
+                tick = Math.max(tick, (System.nanoTime() - start) / tickNanos);
+            }
+
+            long wait = start + (tick + 1) * tickNanos - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(this, wait);
+                continue;
+            }
+            tick++;
+            unlinkCancelled();
+            linkArmed();
+            expire(wheel[(int) (tick & mask)]);
+        }
+    }
+
+    private void unlinkCancelled() {
+        Timeout t;
+        while ((t = cancelled.poll()) != null) {
+            //not linked yet if it was cancelled before the wheel saw it armed
+            if (t.bucket != null) {
+                t.bucket.remove(t);
+                linked--;
+            }
+        }
+    }
+
+    private void linkArmed() {
+        Timeout t;
+        while ((t = armed.poll()) != null) {
+            if (t.state.get() != PENDING) {
+                continue;
+            }
+            //already due, e.g. no delay: this tick's bucket, which is expired next
+            long due = Math.max(t.deadlineTick, tick);
+            wheel[(int) (due & mask)].add(t);
+            linked++;
+        }
+    }
+
+    private void expire(Bucket bucket) {
+        Timeout t = bucket.head;
+        while (t != null) {
+            Timeout next = t.next;
+            //later laps round the wheel stay put
+            if (t.deadlineTick <= tick) {
+                bucket.remove(t);
+                linked--;
+                if (t.state.compareAndSet(PENDING, EXPIRED)) {
+                    Metrics.TIMEOUTS.decrement();
+                    try {
+                        t.task.run();
+                    } catch (RuntimeException e) {
+                        System.err.println("Timer task failed: " + e);
+                    }
+                }
+            }
+            t = next;
+        }
+    }
+
+    /**
+     * Simple test of the TimerWheel class: arms timeouts with random delays,
+     * some longer than a turn of the wheel, cancels a few, and checks the
+     * rest fire once each, in deadline order and never early.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        long tickMillis = 10;
+        TimerWheel wheel = new TimerWheel("wheel-check", tickMillis, 64);
+        int count = 500;
+        long[] due = new long[count];
+        long[] fired = new long[count];
+        boolean[] cancelled = new boolean[count];
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        //one count per timeout, taken when it fires or is cancelled
+        CountDownLatch done = new CountDownLatch(count);
+        SplittableRandom random = new SplittableRandom(1);
+        for (int i = 0; i < count; i++) {
+            int id = i;
+            long delay = random.nextLong(2000);
+            due[i] = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+            Timeout timeout = wheel.schedule(() -> {
+                //written before the synchronized add, so read safely after it
+                fired[id] = System.nanoTime();
+                order.add(id);
+                done.countDown();
+            }, delay, TimeUnit.MILLISECONDS);
+            //one with no delay may have fired already
+            if (i % 5 == 0 && timeout.cancel()) {
+                cancelled[id] = true;
+                done.countDown();
+            }
+        }
+        check(done.await(5, TimeUnit.SECONDS), "every timeout fires");
+        //anything cancelled would have had time to fire too
+        Thread.sleep(100);
+        check(order.size() == new HashSet<>(order).size(), "each fires once");
+        for (int i = 0; i < count; i++) {
+            check(fired[i] == 0 || !cancelled[i], "cancelled timeout " + i + " does not fire");
+        }
+
+        long tick = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        long latest = 0;
+        for (int i = 0; i < order.size(); i++) {
+            int id = order.get(i);
+            check(fired[id] >= due[id], "timeout " + id + " does not fire early");
+            latest = Math.max(latest, fired[id] - due[id]);
+            if (i > 0) {
+                //within one tick the order is the bucket's
+                check(due[id] > due[order.get(i - 1)] - tick, "timeout " + id + " fires in deadline order");
+            }
+        }
+        System.out.println("TimerWheel checks passed, latest by " + TimeUnit.NANOSECONDS.toMillis(latest) + "ms");
+    }
+
+    private static void check(boolean ok, String what) {
+        if (!ok) {
+            throw new IllegalStateException("TimerWheel check failed: " + what);
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package bluff;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The compact binary protocol spoken by BluffClient and BluffClientSwing.
+ *
+ * A client asks for it by sending the single byte {@link #MAGIC} as soon as
+ * it connects. The server answers with the same byte, and everything after
+ * that in either direction is a frame:
+ *
+ *   [length hi][length lo][opcode][payload...]
+ *
+ * where length counts the opcode and payload. Card counts and player IDs
+ * are single bytes. Anything without its own opcode goes as a TEXT frame.
+ *
+ * The hand is versioned: a full HAND is only sent when asked for (or on
+ * reconnecting), and every change after it is a HAND_DELTA carrying the
+ * next version number. A client that sees a version skipped sends RESYNC
+ * and gets a full HAND back (see {@link HandSync}).
+ * A client that has been quiet for a while gets a PING, and answers PONG
+ * so the server knows it is still there.
+ * Clients that never send MAGIC (e.g. netcat) keep the line-based text
+ * protocol.
+ */
+public final class Wire {
+    public static final byte MAGIC = (byte) 0xB1;
+
+    //opcodes
+    public static final byte TEXT = 0;       //utf-8 text
+    public static final byte HAND = 1;       //s->c: count of A, K, Q, J, then u16 hand version
+    public static final byte TURN = 2;       //s->c: player id
+    public static final byte MOVE = 3;       //c->s: actual, fake   s->c: player id, cards played, round card, cards left
+    public static final byte BLUFF = 4;      //c->s: empty          s->c: accuser id, accused id, 1 if they were lying
+    public static final byte ELIMINATED = 5; //s->c: player id
+    public static final byte ROUND = 6;      //s->c: round card
+    public static final byte YOUR_TURN = 7;  //s->c: round card
+    public static final byte SESSION = 8;    //s->c: 8-byte session token
+    public static final byte RESUME = 9;     //c->s: 8-byte session token from an earlier connection
+    public static final byte HAND_DELTA = 10; //s->c: u16 hand version, then signed change to A, K, Q, J
+    public static final byte RESYNC = 11;    //c->s: empty, missed a hand version so send the whole hand
+    public static final byte PING = 12;      //s->c: empty, answer with PONG
+    public static final byte PONG = 13;      //c->s: empty
+
+    public static final int MAX_FRAME = 0xFFFF;
+    //a whole HAND_DELTA frame: length, opcode, version, one change per card type
+    public static final int HAND_DELTA_BYTES = 3 + 2 + Cards.NUM_TYPES;
+
+    private Wire() {
+    }
+
+    // ----- encoding -----
+
+    public static byte[] frame(byte opcode, byte... payload) {
+        int len = payload.length + 1;
+        byte[] frame = new byte[len + 2];
+        frame[0] = (byte) (len >>> 8);
+        frame[1] = (byte) len;
+        frame[2] = opcode;
+        System.arraycopy(payload, 0, frame, 3, payload.length);
+        return frame;
+    }
+
+    public static byte[] text(String message) {
+        return frame(TEXT, message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param packed The whole hand, see {@link Hand#packed()}
+     * @param version Which hand version this is
+     */
+    public static byte[] hand(int packed, int version) {
+        byte[] payload = new byte[Cards.NUM_TYPES + 2];
+        for (int card = 0; card < Cards.NUM_TYPES; card++) {
+            payload[card] = (byte) Hand.count(packed, card);
+        }
+        payload[Cards.NUM_TYPES] = (byte) (version >>> 8);
+        payload[Cards.NUM_TYPES + 1] = (byte) version;
+        return frame(HAND, payload);
+    }
+
+    /**
+     * What changed between two packed hands, as the given version.
+     */
+    public static byte[] handDelta(int version, int before, int after) {
+        ByteBuffer frame = ByteBuffer.allocate(HAND_DELTA_BYTES);
+        putHandDelta(frame, version, before, after);
+        return frame.array();
+    }
+
+    /**
+     * {@link #handDelta} encoded in place, e.g. straight into an outbox,
+     * so sending one makes no garbage. Puts {@link #HAND_DELTA_BYTES}.
+     */
+    public static void putHandDelta(ByteBuffer into, int version, int before, int after) {
+        into.putShort((short) (HAND_DELTA_BYTES - 2)).put(HAND_DELTA).putShort((short) version);
+        for (int card = 0; card < Cards.NUM_TYPES; card++) {
+            into.put((byte) (Hand.count(after, card) - Hand.count(before, card)));
+        }
+    }
+
+    public static byte[] resync() {
+        return frame(RESYNC);
+    }
+
+    public static byte[] pong() {
+        return frame(PONG);
+    }
+
+    public static byte[] move(int actual, int fake) {
+        return frame(MOVE, (byte) actual, (byte) fake);
+    }
+
+    public static byte[] bluff() {
+        return frame(BLUFF);
+    }
+
+    public static byte[] session(byte opcode, long token) {
+        byte[] payload = new byte[8];
+        for (int i = 0; i < 8; i++) {
+            payload[i] = (byte) (token >>> (56 - 8 * i));
+        }
+        return frame(opcode, payload);
+    }
+
+    // ----- text forms, shared by the server's text protocol and the clients -----
+
+    public static String roundText(int roundCard) {
+        return "New Round: " + Cards.name(roundCard) + "'s round";
+    }
+
+    public static String turnText(int playerID) {
+        return "It is now Player " + playerID + "'s turn";
+    }
+
+    public static String yourTurnText(int roundCard) {
+        return "Your turn! Round is: " + Cards.name(roundCard);
+    }
+
+    public static String promptText(int roundCard) {
+        String name = Cards.name(roundCard);
+        return "Enter the number of ACTUAL '" + name + "' and FAKE '" + name + "' cards you are playing:";
+    }
+
+    public static String handText(Hand hand) {
+        return "Your hand: " + hand;
+    }
+
+    public static String handDeltaText(byte[] p) {
+        StringBuilder sb = new StringBuilder("Your hand changed:");
+        for (int card = 0; card < Cards.NUM_TYPES; card++) {
+            int change = p[2 + card];
+            if (change != 0) {
+                sb.append(' ').append(change > 0 ? "+" : "").append(change).append(' ').append(Cards.name(card));
+            }
+        }
+        return sb.toString();
+    }
+
+    public static String playedText(int playerID, int count, int roundCard) {
+        return "Player " + playerID + " played " + count + " " + Cards.name(roundCard) + "(s).";
+    }
+
+    public static String cardsLeftText(int playerID, int cardsLeft) {
+        return "Player " + playerID + "'s hand now has only " + cardsLeft + " cards left!";
+    }
+
+    public static String bluffText(int accuserID, int accusedID, boolean wasLying) {
+        if (wasLying) {
+            return "Bluff successful! Player " + accusedID + " was lying and is eliminated!";
+        }
+        return "Bluff failed! Player " + accuserID + " is eliminated!";
+    }
+
+    public static String hintText(int playerID, int count, int roundCard, double chance) {
+        return String.format("Hint: about %.0f%% chance Player %d's %d %s(s) include a fake.",
+            100 * chance, playerID, count, Cards.name(roundCard));
+    }
+
+    public static String eliminatedText() {
+        return "You have been eliminated!";
+    }
+
+    public static String sessionText(long token) {
+        return "Session: " + Long.toHexString(token) + " (send RESUME " + Long.toHexString(token)
+            + " after reconnecting to keep your seat)";
+    }
+
+    // ----- decoding, client side -----
+
+    /**
+     * Rebuilds a hand from a HAND frame.
+     */
+    public static Hand handOf(byte[] payload) {
+        Hand hand = new Hand();
+        for (int card = 0; card < Cards.NUM_TYPES; card++) {
+            for (int i = 0; i < payload[card]; i++) {
+                hand.add(card);
+            }
+        }
+        return hand;
+    }
+
+    /**
+     * Reads the token out of a SESSION or RESUME frame.
+     */
+    public static long tokenOf(byte[] payload) {
+        long token = 0;
+        for (int i = 0; i < 8; i++) {
+            token = (token << 8) | (payload[i] & 0xFF);
+        }
+        return token;
+    }
+
+    /**
+     * Turns a server frame into the same text the text protocol would show.
+     */
+    public static String describe(byte opcode, byte[] p) {
+        return switch (opcode) {
+            case TEXT -> new String(p, StandardCharsets.UTF_8);
+            case HAND -> handText(handOf(p));
+            case TURN -> turnText(p[0]);
+            case MOVE -> playedText(p[0], p[1], p[2]) + "\n" + cardsLeftText(p[0], p[3]);
+            case BLUFF -> bluffText(p[0], p[1], p[2] != 0);
+            case ELIMINATED -> eliminatedText();
+            case ROUND -> roundText(p[0]);
+            case YOUR_TURN -> yourTurnText(p[0]) + "\n" + promptText(p[0]);
+            case SESSION -> sessionText(tokenOf(p));
+            case HAND_DELTA -> handDeltaText(p);
+            default -> "(unknown message " + opcode + ")";
+        };
+    }
+
+    public interface FrameListener {
+        void onFrame(byte opcode, byte[] payload);
+    }
+
+    /**
+     * Reads everything the server sends until the socket closes. Lines sent
+     * before the server switched to binary arrive as TEXT frames.
+     */
+    public static void readAll(InputStream raw, FrameListener listener) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(raw));
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        //text until the server echoes MAGIC
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == (MAGIC & 0xFF) && line.size() == 0) {
+                break;
+            }
+            if (b == '\n') {
+                listener.onFrame(TEXT, line.toByteArray());
+                line.reset();
+            } else if (b != '\r') {
+                line.write(b);
+            }
+        }
+        if (b == -1) {
+            return;
+        }
+
+        //frames from here on
+        while (true) {
+            int len;
+            try {
+                len = in.readUnsignedShort();
+            } catch (EOFException e) {
+                return;
+            }
+            byte opcode = in.readByte();
+            byte[] payload = new byte[len - 1];
+            in.readFully(payload);
+            listener.onFrame(opcode, payload);
+        }
+    }
+
+    /**
+     * Turns a typed command (MOVE a f, BLUFF, RESUME token, anything else) into a frame.
+     */
+    public static byte[] command(String cmd) {
+        String[] parts = cmd.trim().split("\\s+");
+        if (parts.length == 1 && parts[0].equalsIgnoreCase("BLUFF")) {
+            return bluff();
+        }
+        if (parts.length == 2 && parts[0].equalsIgnoreCase("RESUME")) {
+            try {
+                return session(RESUME, Long.parseUnsignedLong(parts[1], 16));
+            } catch (NumberFormatException e) {
+                //fall through and let the server complain
+            }
+        }
+        if (parts.length == 3 && parts[0].equalsIgnoreCase("MOVE")) {
+            try {
+                int actual = Integer.parseInt(parts[1]);
+                int fake = Integer.parseInt(parts[2]);
+                if (actual >= 0 && actual < 128 && fake >= 0 && fake < 128) {
+                    return move(actual, fake);
+                }
+            } catch (NumberFormatException e) {
+                //fall through and let the server complain
+            }
+        }
+        return text(cmd);
+    }
+}